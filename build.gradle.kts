@@ -98,6 +98,16 @@ dependencies {
     
 }
 
+// StructuredTaskScope (enrichment lookups) is a preview API in Java 25
+tasks.withType<JavaCompile> {
+    options.compilerArgs.add("--enable-preview")
+}
+
+tasks.withType<JavaExec> {
+    jvmArgs("--enable-preview")
+}
+
 tasks.withType<Test> {
     useJUnitPlatform()
+    jvmArgs("--enable-preview")
 }
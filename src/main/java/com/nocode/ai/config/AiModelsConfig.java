@@ -4,6 +4,7 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -13,12 +14,14 @@ public class AiModelsConfig {
 
     @Bean
     @Primary
+    @ConditionalOnProperty(name = "app.ollama.routing.enabled", havingValue = "false", matchIfMissing = true)
     public ChatModel primaryChatModel(OllamaChatModel ollamaChatModel) {
         return ollamaChatModel;
     }
 
     @Bean
     @Primary
+    @ConditionalOnProperty(name = "app.ollama.routing.enabled", havingValue = "false", matchIfMissing = true)
     public EmbeddingModel primaryEmbeddingModel(OllamaEmbeddingModel ollamaEmbeddingModel) {
         return ollamaEmbeddingModel;
     }
@@ -2,9 +2,18 @@ package com.nocode.ai.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import com.nocode.ai.service.execution.CustomerOrderedExecutor;
 
 @Configuration
 public class KafkaConfig {
@@ -18,6 +27,9 @@ public class KafkaConfig {
     @Value("${spring.kafka.topics.alerts:brand-alerts}")
     private String alertsTopic;
 
+    @Value("${spring.kafka.topics.priority-messages:social-media-messages-priority}")
+    private String priorityMessagesTopic;
+
     @Bean
     public NewTopic socialMessagesTopic() {
         return TopicBuilder.name(socialMessagesTopic)
@@ -41,4 +53,54 @@ public class KafkaConfig {
                 .replicas(1)
                 .build();
     }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.priority.enabled", havingValue = "true")
+    public NewTopic priorityMessagesTopic() {
+        return TopicBuilder.name(priorityMessagesTopic)
+                .partitions(3)
+                .replicas(1)
+                .build();
+    }
+
+    /**
+     * Batch listener container used when app.ingestion.mode=batch.
+     * Offsets are committed manually by the listener so only finished records are committed.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "batch")
+    public ConcurrentKafkaListenerContainerFactory<String, Object> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Record listener container used when app.ingestion.mode is concurrent or pipeline.
+     * Records are acknowledged out of order from the analysis threads; with async acks
+     * the container only commits an offset once every earlier record of the partition is acknowledged.
+     * A record rejected because the analysis executor is saturated is redelivered every
+     * app.ingestion.saturated-retry-ms until it is accepted; the back-off sleep stops with the container.
+     * Other listener errors keep the default retries.
+     */
+    @Bean
+    @ConditionalOnExpression("'${app.ingestion.mode:single}' matches 'concurrent|pipeline'")
+    public ConcurrentKafkaListenerContainerFactory<String, Object> asyncAckKafkaListenerContainerFactory(
+            ConsumerFactory<String, Object> consumerFactory,
+            @Value("${app.ingestion.saturated-retry-ms:1000}") long saturatedRetryMs) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler();
+        FixedBackOff untilAccepted = new FixedBackOff(saturatedRetryMs, FixedBackOff.UNLIMITED_ATTEMPTS);
+        errorHandler.setBackOffFunction((record, e) -> e instanceof CustomerOrderedExecutor.SaturatedException
+                || e.getCause() instanceof CustomerOrderedExecutor.SaturatedException ? untilAccepted : null);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
 }
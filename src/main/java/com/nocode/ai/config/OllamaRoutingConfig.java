@@ -0,0 +1,66 @@
+package com.nocode.ai.config;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.nocode.ai.service.routing.EndpointPool;
+import com.nocode.ai.service.routing.OllamaEndpoint;
+import com.nocode.ai.service.routing.RoutingChatModel;
+import com.nocode.ai.service.routing.RoutingEmbeddingModel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Routes chat and embedding calls over the Ollama hosts in app.ollama.routing.endpoints instead of the single
+ * spring.ai.ollama.base-url. Every host gets the default chat options of the auto-configured model.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.ollama.routing.enabled", havingValue = "true")
+public class OllamaRoutingConfig {
+
+    @Bean
+    public EndpointPool ollamaEndpointPool(@Value("${app.ollama.routing.endpoints}") String[] endpoints,
+                                           @Value("${spring.ai.ollama.embedding.model:all-minilm:latest}") String embeddingModel,
+                                           @Value("${app.ollama.routing.eject-after-failures:3}") int ejectAfterFailures,
+                                           @Value("${app.ollama.routing.ejection-ms:30000}") long ejectionMs,
+                                           @Value("${app.ollama.routing.health-timeout-ms:2000}") long healthTimeoutMs,
+                                           @Value("${app.ollama.routing.health-connect-timeout-ms:500}") long healthConnectTimeoutMs,
+                                           OllamaChatModel ollamaChatModel,
+                                           MeterRegistry meterRegistry) {
+        OllamaOptions chatOptions = (OllamaOptions) ollamaChatModel.getDefaultOptions();
+        OllamaOptions embeddingOptions = OllamaOptions.builder().model(embeddingModel).build();
+        return new EndpointPool(Arrays.stream(endpoints)
+                        .map(String::strip)
+                        .filter(url -> !url.isEmpty())
+                        .map(url -> OllamaEndpoint.create(url, chatOptions, embeddingOptions))
+                        .toList(),
+                ejectAfterFailures, Duration.ofMillis(ejectionMs), Duration.ofMillis(healthTimeoutMs),
+                Duration.ofMillis(healthConnectTimeoutMs), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public ChatModel routingChatModel(EndpointPool ollamaEndpointPool,
+                                      @Value("${app.ollama.routing.hedge.enabled:false}") boolean hedging,
+                                      @Value("${app.ollama.routing.hedge.initial-delay-ms:2000}") long initialDelayMs,
+                                      @Value("${app.ollama.routing.hedge.min-delay-ms:250}") long minDelayMs,
+                                      MeterRegistry meterRegistry) {
+        return new RoutingChatModel(ollamaEndpointPool, hedging, Duration.ofMillis(initialDelayMs), Duration.ofMillis(minDelayMs), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public EmbeddingModel routingEmbeddingModel(EndpointPool ollamaEndpointPool) {
+        return new RoutingEmbeddingModel(ollamaEndpointPool);
+    }
+}
@@ -1,8 +1,11 @@
 package com.nocode.ai.config;
 
+import javax.sql.DataSource;
+
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -10,8 +13,16 @@ import org.springframework.jdbc.core.JdbcTemplate;
 @Configuration
 public class VectorStoreConfig {
 
+    /**
+     * The vector store gets its own JdbcTemplate so its similarity searches carry a JDBC query timeout: the driver
+     * cancels a slow search instead of it holding up enrichment (and a pooled connection) past the history deadline.
+     */
     @Bean
-    public VectorStore vectorStore(JdbcTemplate jdbcTemplate, EmbeddingModel embeddingModel) {
+    public VectorStore vectorStore(DataSource dataSource, EmbeddingModel embeddingModel,
+            @Value("${app.vector-store.query-timeout-ms:${app.analysis.enrichment.history-timeout-ms:3000}}") long queryTimeoutMs) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // JDBC query timeouts are whole seconds
+        jdbcTemplate.setQueryTimeout((int) Math.max(1, queryTimeoutMs / 1000));
         return PgVectorStore.builder(jdbcTemplate, embeddingModel)
                 .vectorTableName("vector_store") // Nome da tabela para os vetores
                 .dimensions(384) // Dimensões para all-minilm(384) ou nomic-embed-text(768)
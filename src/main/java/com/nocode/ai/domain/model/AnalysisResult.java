@@ -15,6 +15,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -69,11 +70,33 @@ public class AnalysisResult {
     @Builder.Default
     private Status status = Status.OPEN;
 
+    @Column(name = "source_result_id")
+    private Long sourceResultId; // Result whose analysis was reused for this near-duplicate message
+
+    @Column(name = "cluster_size")
+    private Integer clusterSize; // Near-duplicate cluster size when this message was analyzed
+
+    @Column(name = "analyzed_by", length = 100)
+    private String analyzedBy; // Model name, pre-classifier, near-duplicate, cache or provisional
+
+    @Column(name = "enrichment_attempts", nullable = false, columnDefinition = "integer default 0")
+    @Builder.Default
+    private int enrichmentAttempts = 0; // Failed re-analyses of a provisional analysis
+
+    @Column(name = "next_enrichment_at")
+    private OffsetDateTime nextEnrichmentAt; // Earliest time a failed re-analysis is retried
+
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     public enum Sentiment {
         POSITIVE, NEUTRAL, NEGATIVE, URGENT
     }
 
     public enum Status {
-        OPEN, IN_PROGRESS, RESOLVED
+        OPEN, IN_PROGRESS, RESOLVED,
+        PENDING_ENRICHMENT, // Provisional analysis made while the LLM was unavailable, waiting to be re-analyzed
+        MANUAL_REVIEW // Provisional analysis whose re-analysis kept failing
     }
 }
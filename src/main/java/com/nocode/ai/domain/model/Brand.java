@@ -34,6 +34,24 @@ public class Brand {
     @Column(columnDefinition = "TEXT")
     private String systemInstructions; // Specific personality or rules for this brand
 
+    @Column(name = "classifier_threshold")
+    private Double classifierThreshold; // Pre-classifier confidence needed to skip the LLM; null uses app.classifier.confidence-threshold
+
+    @Column(name = "cascade_small_model", length = 100)
+    private String cascadeSmallModel; // null uses app.analysis.cascade.small-model
+
+    @Column(name = "cascade_large_model", length = 100)
+    private String cascadeLargeModel; // null uses app.analysis.cascade.large-model
+
+    @Column(name = "cascade_confidence_threshold")
+    private Double cascadeConfidenceThreshold; // Below this the small model's answer is escalated; null uses app.analysis.cascade.confidence-threshold
+
+    @Column(name = "scheduling_weight")
+    private Double schedulingWeight; // Share of LLM capacity relative to other brands; null uses app.fair-share.default-weight
+
+    @Column(name = "max_in_flight")
+    private Integer maxInFlight; // Max concurrent LLM calls for this brand; null uses app.fair-share.max-in-flight-per-brand
+
     @Column(name = "created_at")
     @Builder.Default
     private OffsetDateTime createdAt = OffsetDateTime.now();
@@ -0,0 +1,43 @@
+package com.nocode.ai.domain.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A customer ID merged into another by identity linking. Replayed in id order, the rows rebuild the alias graph.
+ */
+@Entity
+@Table(name = "customer_aliases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CustomerAlias {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "alias_id", nullable = false)
+    private UUID aliasId;
+
+    @Column(name = "canonical_id", nullable = false)
+    private UUID canonicalId;
+
+    @Column(name = "linked_at")
+    @Builder.Default
+    private OffsetDateTime linkedAt = OffsetDateTime.now();
+}
@@ -0,0 +1,40 @@
+package com.nocode.ai.domain.model;
+
+import java.time.OffsetDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A conversation memory spilled to the database because the memory ingestion queue was full.
+ * Replayed in id order once the queue has room again.
+ */
+@Entity
+@Table(name = "pending_memories")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PendingMemory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "analysis_result_id", nullable = false)
+    private Long analysisResultId;
+
+    @Column(name = "spilled_at")
+    @Builder.Default
+    private OffsetDateTime spilledAt = OffsetDateTime.now();
+}
@@ -14,6 +14,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -55,6 +56,9 @@ public class SocialMessage {
     @Column(name = "message_id_source")
     private String messageIdSource;
 
+    @Column(name = "source_record", unique = true)
+    private String sourceRecord; // Kafka topic-partition@offset of the record, so redeliveries are not stored twice
+
     @Column(name = "created_at_source")
     private OffsetDateTime createdAtSource;
 
@@ -62,10 +66,20 @@ public class SocialMessage {
     @Builder.Default
     private OffsetDateTime capturedAt = OffsetDateTime.now();
 
+    @Transient
+    private CustomerIdentity.TrustLevel trustLevel; // Resolved with the customer ID at ingestion; null when loaded from the database
+
     @OneToOne(mappedBy = "message", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     @com.fasterxml.jackson.annotation.JsonManagedReference
     private AnalysisResult analysisResult;
 
+    /**
+     * The source record value of the Kafka record a message was read from.
+     */
+    public static String sourceRecord(String topic, int partition, long offset) {
+        return topic + "-" + partition + "@" + offset;
+    }
+
     public enum ChannelType {
         WHATSAPP,           // Trusted: Phone verified by Meta
         APP_LOGIN,          // Trusted: Authenticated user session
@@ -1,9 +1,47 @@
 package com.nocode.ai.domain.repository;
 
+import java.time.OffsetDateTime;
+import java.util.List;
+
 import com.nocode.ai.domain.model.AnalysisResult;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface AnalysisResultRepository extends JpaRepository<AnalysisResult, Long> {
+
+    List<AnalysisResult> findByStatusOrderByIdAsc(AnalysisResult.Status status, Pageable pageable);
+
+    /**
+     * Results in the status whose retry time, if any, has passed, oldest first.
+     */
+    @Query("SELECT r FROM AnalysisResult r WHERE r.status = :status"
+            + " AND (r.nextEnrichmentAt IS NULL OR r.nextEnrichmentAt <= :now) ORDER BY r.id")
+    List<AnalysisResult> findDue(@Param("status") AnalysisResult.Status status, @Param("now") OffsetDateTime now, Pageable pageable);
+
+    /**
+     * Records a failed re-analysis of a result that is still pending enrichment.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE AnalysisResult r SET r.enrichmentAttempts = :attempts, r.nextEnrichmentAt = :retryAt, r.status = :status"
+            + " WHERE r.id = :id AND r.status = com.nocode.ai.domain.model.AnalysisResult.Status.PENDING_ENRICHMENT")
+    int recordEnrichmentFailure(@Param("id") Long id, @Param("attempts") int attempts,
+                                @Param("retryAt") OffsetDateTime retryAt, @Param("status") AnalysisResult.Status status);
+
+    /**
+     * Moves the next re-analysis of a pending result to a later time without counting an attempt.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE AnalysisResult r SET r.nextEnrichmentAt = :retryAt"
+            + " WHERE r.id = :id AND r.status = com.nocode.ai.domain.model.AnalysisResult.Status.PENDING_ENRICHMENT")
+    int postponeEnrichment(@Param("id") Long id, @Param("retryAt") OffsetDateTime retryAt);
+
+    long countByStatus(AnalysisResult.Status status);
 }
@@ -0,0 +1,13 @@
+package com.nocode.ai.domain.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nocode.ai.domain.model.CustomerAlias;
+
+@Repository
+public interface CustomerAliasRepository extends JpaRepository<CustomerAlias, Long> {
+    List<CustomerAlias> findByIdGreaterThanOrderByIdAsc(Long id);
+}
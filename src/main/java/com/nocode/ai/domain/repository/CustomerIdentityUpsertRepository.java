@@ -0,0 +1,154 @@
+package com.nocode.ai.domain.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import com.nocode.ai.domain.model.CustomerIdentity;
+import com.nocode.ai.domain.model.CustomerIdentity.TrustLevel;
+import com.nocode.ai.domain.model.SocialMessage.ChannelType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Find-or-create of customer identities with INSERT ... ON CONFLICT DO NOTHING, so concurrent first contacts
+ * of the same user never violate the (brand_id, channel_type, platform_user_id) unique constraint.
+ * <p>
+ * A conflicting insert waits for the other transaction and then inserts nothing; identities that neither
+ * this statement inserted nor its snapshot could see yet are read again by a follow-up query.
+ * Batches insert in key order, so concurrent batches with overlapping new users take the unique index locks in
+ * the same order and cannot deadlock.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CustomerIdentityUpsertRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO customer_identities (id, customer_id, brand_id, channel_type, platform_user_id, trust_level, created_at, last_seen_at)
+            VALUES (gen_random_uuid(), gen_random_uuid(), ?, ?, ?, 'UNVERIFIED', now(), now())
+            ON CONFLICT (brand_id, channel_type, platform_user_id) DO NOTHING
+            RETURNING brand_id, channel_type, platform_user_id, customer_id, trust_level
+            """;
+
+    private static final String UPSERT_ALL_SQL = """
+            WITH input AS (
+                SELECT DISTINCT * FROM unnest(?::uuid[], ?::text[], ?::text[]) AS v(brand_id, channel_type, platform_user_id)
+            ), inserted AS (
+                INSERT INTO customer_identities (id, customer_id, brand_id, channel_type, platform_user_id, trust_level, created_at, last_seen_at)
+                SELECT gen_random_uuid(), gen_random_uuid(), brand_id, channel_type, platform_user_id, 'UNVERIFIED', now(), now()
+                FROM input
+                ORDER BY brand_id, channel_type, platform_user_id
+                ON CONFLICT (brand_id, channel_type, platform_user_id) DO NOTHING
+                RETURNING brand_id, channel_type, platform_user_id, customer_id, trust_level
+            )
+            SELECT brand_id, channel_type, platform_user_id, customer_id, trust_level FROM inserted
+            UNION ALL
+            SELECT c.brand_id, c.channel_type, c.platform_user_id, c.customer_id, c.trust_level
+            FROM customer_identities c JOIN input i USING (brand_id, channel_type, platform_user_id)
+            """;
+
+    private static final String FIND_ALL_SQL = """
+            SELECT c.brand_id, c.channel_type, c.platform_user_id, c.customer_id, c.trust_level
+            FROM customer_identities c
+            JOIN unnest(?::uuid[], ?::text[], ?::text[]) AS v(brand_id, channel_type, platform_user_id)
+              USING (brand_id, channel_type, platform_user_id)
+            """;
+
+    private static final RowMapper<CustomerIdentity> ROW_MAPPER = CustomerIdentityUpsertRepository::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The identity of the user, created as UNVERIFIED with a new customer ID if it does not exist yet.
+     * Only key, customer ID and trust level are set on the returned instance, which is not managed by JPA.
+     */
+    public CustomerIdentity findOrCreate(UUID brandId, ChannelType channelType, String platformUserId) {
+        List<CustomerIdentity> inserted = jdbcTemplate.query(UPSERT_SQL, ROW_MAPPER, brandId, channelType.name(), platformUserId);
+        if (!inserted.isEmpty()) {
+            return inserted.get(0);
+        }
+        return findAll(List.of(key(brandId, channelType, platformUserId))).stream()
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Identity of " + platformUserId + " on " + channelType
+                        + " for brand " + brandId + " was neither inserted nor found"));
+    }
+
+    /**
+     * Same as {@link #findOrCreate} for many users in one round-trip, plus one more for identities
+     * another transaction committed while the statement ran.
+     *
+     * @param keys Identities with brand ID, channel type and platform user ID set
+     * @return One identity per distinct key, in no particular order
+     */
+    public List<CustomerIdentity> findOrCreateAll(Collection<CustomerIdentity> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<CustomerIdentity> resolved = new ArrayList<>(query(UPSERT_ALL_SQL, keys));
+        Set<String> found = resolved.stream()
+                .map(CustomerIdentityUpsertRepository::keyOf)
+                .collect(Collectors.toSet());
+        List<CustomerIdentity> missing = keys.stream()
+                .filter(key -> !found.contains(keyOf(key)))
+                .toList();
+        if (!missing.isEmpty()) {
+            resolved.addAll(findAll(missing));
+        }
+        return resolved;
+    }
+
+    private List<CustomerIdentity> findAll(Collection<CustomerIdentity> keys) {
+        return query(FIND_ALL_SQL, keys);
+    }
+
+    private List<CustomerIdentity> query(String sql, Collection<CustomerIdentity> keys) {
+        UUID[] brandIds = new UUID[keys.size()];
+        String[] channels = new String[keys.size()];
+        String[] users = new String[keys.size()];
+        int i = 0;
+        for (CustomerIdentity key : keys) {
+            brandIds[i] = key.getBrandId();
+            channels[i] = key.getChannelType().name();
+            users[i] = key.getPlatformUserId();
+            i++;
+        }
+        return jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("uuid", brandIds));
+            statement.setArray(2, connection.createArrayOf("text", channels));
+            statement.setArray(3, connection.createArrayOf("text", users));
+            return statement;
+        }, ROW_MAPPER);
+    }
+
+    private static CustomerIdentity key(UUID brandId, ChannelType channelType, String platformUserId) {
+        return CustomerIdentity.builder()
+                .brandId(brandId)
+                .channelType(channelType)
+                .platformUserId(platformUserId)
+                .build();
+    }
+
+    private static String keyOf(CustomerIdentity identity) {
+        return identity.getBrandId() + "|" + identity.getChannelType() + "|" + identity.getPlatformUserId();
+    }
+
+    private static CustomerIdentity mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return CustomerIdentity.builder()
+                .brandId(rs.getObject("brand_id", UUID.class))
+                .channelType(ChannelType.valueOf(rs.getString("channel_type")))
+                .platformUserId(rs.getString("platform_user_id"))
+                .customerId(rs.getObject("customer_id", UUID.class))
+                .trustLevel(TrustLevel.valueOf(rs.getString("trust_level")))
+                .build();
+    }
+}
@@ -0,0 +1,14 @@
+package com.nocode.ai.domain.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nocode.ai.domain.model.PendingMemory;
+
+@Repository
+public interface PendingMemoryRepository extends JpaRepository<PendingMemory, Long> {
+    List<PendingMemory> findAllByOrderByIdAsc(Pageable pageable);
+}
@@ -1,9 +1,14 @@
 package com.nocode.ai.domain.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.nocode.ai.domain.model.SocialMessage;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface SocialMessageRepository extends JpaRepository<SocialMessage, Long> {
+
+    List<SocialMessage> findBySourceRecordIn(Collection<String> sourceRecords);
 }
@@ -2,25 +2,36 @@ package com.nocode.ai.messaging;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.model.OutboxEvent;
+import com.nocode.ai.domain.repository.OutboxEventRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Publishes analysis results through the transactional outbox.
+ * The event is stored in the caller's transaction and sent to Kafka later by {@link OutboxRelay}.
+ */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 @ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
 public class AnalysisResultProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxEventRepository outboxRepository;
+    private final ObjectMapper objectMapper;
 
     @Value("${spring.kafka.topics.analysis-results}")
     private String topic;
 
+    @Transactional(propagation = Propagation.MANDATORY)
     public void publishResult(AnalysisResult result) {
         AnalysisResultDTO dto = new AnalysisResultDTO(
             result.getMessage().getId(),
@@ -29,9 +40,17 @@ public class AnalysisResultProducer {
             result.getConfidenceScore(),
             result.getPublicClosingMessage()
         );
-        
-        kafkaTemplate.send(topic, result.getMessage().getId().toString(), dto);
-        log.info("Published analysis result for message {}", result.getMessage().getId());
+
+        try {
+            outboxRepository.save(OutboxEvent.builder()
+                    .topic(topic)
+                    .messageKey(result.getMessage().getId().toString())
+                    .payload(objectMapper.writeValueAsString(dto))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize analysis result for message " + dto.messageId(), e);
+        }
+        log.debug("Queued analysis result for message {} in outbox", result.getMessage().getId());
     }
 
     public record AnalysisResultDTO(Long messageId, String sentiment, String category, Double confidence, String publicClosingMessage) {}
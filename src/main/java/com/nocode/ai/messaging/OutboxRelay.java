@@ -0,0 +1,130 @@
+package com.nocode.ai.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.domain.model.OutboxEvent;
+import com.nocode.ai.domain.repository.OutboxEventRepository;
+import com.nocode.ai.messaging.AnalysisResultProducer.AnalysisResultDTO;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drains the outbox to Kafka in large batches.
+ * All records of a batch are handed to a producer tuned for batching and compression, and
+ * rows are deleted only after the broker acknowledged them. Failed sends stay in the outbox
+ * and are retried on the next run (at-least-once delivery).
+ * A batch waits at most send-timeout-ms for its acknowledgements as a whole, so a broker outage holds the
+ * row locks and the connection for one timeout per run, not one per event.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final KafkaTemplate<String, Object> relayTemplate;
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize;
+
+    private final long sendTimeoutMs;
+
+    public OutboxRelay(OutboxEventRepository outboxRepository,
+                       TransactionTemplate transactionTemplate,
+                       ObjectMapper objectMapper,
+                       ProducerFactory<String, Object> producerFactory,
+                       @Value("${app.outbox.send-timeout-ms:10000}") long sendTimeoutMs,
+                       @Value("${app.outbox.linger-ms:20}") int lingerMs,
+                       @Value("${app.outbox.producer-batch-bytes:262144}") int producerBatchBytes,
+                       @Value("${app.outbox.compression-type:lz4}") String compressionType) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.sendTimeoutMs = sendTimeoutMs;
+        // Sending must not block on metadata longer than the batch may wait for acknowledgements
+        this.relayTemplate = new KafkaTemplate<>(producerFactory, Map.<String, Object>of(
+                ProducerConfig.LINGER_MS_CONFIG, lingerMs,
+                ProducerConfig.BATCH_SIZE_CONFIG, producerBatchBytes,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType,
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.MAX_BLOCK_MS_CONFIG, sendTimeoutMs));
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms:200}")
+    public void relay() {
+        Integer relayed;
+        do {
+            relayed = transactionTemplate.execute(status -> relayBatch());
+        } while (relayed != null && relayed == batchSize);
+    }
+
+    /**
+     * Sends one batch of locked outbox rows and deletes the acknowledged ones.
+     *
+     * @return The number of events relayed, or 0 if any send failed
+     */
+    private int relayBatch() {
+        List<OutboxEvent> events = outboxRepository.lockNextBatch(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            sends.add(send(event));
+        }
+
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Some sends failed or are still pending; only the acknowledged ones are deleted below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Long> acknowledged = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            CompletableFuture<SendResult<String, Object>> sent = sends.get(i);
+            if (sent.isDone() && !sent.isCompletedExceptionally()) {
+                acknowledged.add(events.get(i).getId());
+            }
+        }
+        if (acknowledged.size() < events.size()) {
+            log.warn("{} of {} outbox events not acknowledged by Kafka within {}ms, will retry",
+                    events.size() - acknowledged.size(), events.size(), sendTimeoutMs);
+        }
+
+        outboxRepository.deleteAllByIdInBatch(acknowledged);
+        log.debug("Relayed {} of {} outbox events", acknowledged.size(), events.size());
+
+        return acknowledged.size() == events.size() ? events.size() : 0;
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEvent event) {
+        try {
+            AnalysisResultDTO dto = objectMapper.readValue(event.getPayload(), AnalysisResultDTO.class);
+            return relayTemplate.send(event.getTopic(), event.getMessageKey(), dto);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.nocode.ai.messaging;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.messaging.SocialMediaConsumer.SocialMessageDTO;
+import com.nocode.ai.service.classifier.PriorityClassifier;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the social messages topic in its own consumer group and forwards priority messages to the priority topic,
+ * so they never queue behind the bulk backlog. The bulk consumers skip the same messages.
+ * The offset is only committed once the forward was acknowledged; a failed forward is redelivered.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+@ConditionalOnProperty(name = "app.priority.enabled", havingValue = "true")
+public class PriorityLaneRouter {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final PriorityClassifier priorityClassifier;
+
+    @Value("${spring.kafka.topics.priority-messages}")
+    private String priorityTopic;
+
+    @Value("${app.priority.forward-timeout-ms:5000}")
+    private long forwardTimeoutMs;
+
+    @KafkaListener(topics = "${spring.kafka.topics.social-messages}", groupId = "${app.priority.router-group-id}")
+    public void route(SocialMessageDTO messageDTO) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!priorityClassifier.isPriority(messageDTO.platform(), messageDTO.content())) {
+            return;
+        }
+        String key = messageDTO.brandId() != null ? messageDTO.brandId().toString() : null;
+        kafkaTemplate.send(priorityTopic, key, messageDTO).get(forwardTimeoutMs, TimeUnit.MILLISECONDS);
+        log.debug("Forwarded {} message of brand {} to the priority lane", messageDTO.platform(), messageDTO.brandId());
+    }
+}
@@ -0,0 +1,104 @@
+package com.nocode.ai.messaging;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.messaging.SocialMediaConsumer.SocialMessageDTO;
+import com.nocode.ai.service.BrandAnalyzerService;
+import com.nocode.ai.service.classifier.PriorityClassifier;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batch ingestion mode (app.ingestion.mode=batch).
+ * Pulls up to app.analysis.batch-size records per poll, persists the whole batch in one go
+ * and then analyzes it. Offsets are only committed for records whose analysis has finished.
+ * Messages are stored with their topic, partition and offset, so records redelivered after a failed analysis
+ * reuse the stored message and are only analyzed if they were not already.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+@ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "batch")
+public class SocialMediaBatchConsumer {
+
+    private final BrandAnalyzerService analyzerService;
+    private final PriorityClassifier priorityClassifier;
+
+    @Value("${app.analysis.retry-delay-ms:1000}")
+    private long retryDelayMs;
+
+    @KafkaListener(topics = "${spring.kafka.topics.social-messages}",
+                   groupId = "${spring.kafka.consumer.group-id}",
+                   containerFactory = "batchKafkaListenerContainerFactory",
+                   batch = "true",
+                   properties = "max.poll.records=${app.analysis.batch-size:100}")
+    public void consumeBatch(List<SocialMessageDTO> batch,
+                             @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                             @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions,
+                             @Header(KafkaHeaders.OFFSET) List<Long> offsets,
+                             Acknowledgment ack) {
+        log.info("Received batch of {} messages from Kafka", batch.size());
+
+        // Priority messages are analyzed by the priority lane; batchIndex maps each draft back to its record
+        List<SocialMessage> drafts = new ArrayList<>(batch.size());
+        List<Integer> batchIndex = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            SocialMessageDTO dto = batch.get(i);
+            if (priorityClassifier.isPriority(dto.platform(), dto.content())) {
+                continue;
+            }
+            drafts.add(SocialMessage.builder()
+                    .brandId(dto.brandId())
+                    .content(dto.content())
+                    .platform(dto.platform())
+                    .platformUser(dto.user())
+                    .sourceRecord(SocialMessage.sourceRecord(topics.get(i), partitions.get(i), offsets.get(i)))
+                    .build());
+            batchIndex.add(i);
+        }
+
+        List<SocialMessage> persisted;
+        try {
+            persisted = analyzerService.ingestBatch(drafts);
+        } catch (Exception e) {
+            log.error("Error persisting batch of {} messages from Kafka, batch will be redelivered", batch.size(), e);
+            ack.nack(0, Duration.ofMillis(retryDelayMs));
+            return;
+        }
+
+        // Duplicates in the batch point to the same persisted message, analyze each one only once.
+        // Redelivered messages analyzed before the failure already have their result.
+        Set<Long> analyzed = new HashSet<>();
+        for (int i = 0; i < persisted.size(); i++) {
+            SocialMessage message = persisted.get(i);
+            if (!analyzed.add(message.getId()) || message.getAnalysisResult() != null) {
+                continue;
+            }
+            try {
+                analyzerService.analyzeMessage(message);
+            } catch (Exception e) {
+                // Commits everything before index i and redelivers the rest of the batch
+                log.error("Error analyzing message {} at batch index {}, redelivering from this record", message.getId(), batchIndex.get(i), e);
+                ack.nack(batchIndex.get(i), Duration.ofMillis(retryDelayMs));
+                return;
+            }
+        }
+
+        ack.acknowledge();
+    }
+}
@@ -0,0 +1,79 @@
+package com.nocode.ai.messaging;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.messaging.SocialMediaConsumer.SocialMessageDTO;
+import com.nocode.ai.service.BrandAnalyzerService;
+import com.nocode.ai.service.classifier.PriorityClassifier;
+import com.nocode.ai.service.execution.CustomerOrderedExecutor;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Concurrent ingestion mode (app.ingestion.mode=concurrent).
+ * The listener thread only resolves the identity and stores the message, then hands the
+ * analysis to a virtual-thread executor ordered by customer. The record is acknowledged when
+ * its analysis finishes; the container commits it once all earlier records of the partition are done.
+ * Messages are stored with their topic, partition and offset, so a redelivered record reuses the stored message
+ * and is only analyzed if it was not already.
+ * While the executor is saturated the listener throws, and the container's error handler backs off and
+ * redelivers the record (see KafkaConfig).
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+@ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "concurrent")
+public class SocialMediaConcurrentConsumer {
+
+    private final BrandAnalyzerService analyzerService;
+    private final CustomerOrderedExecutor executor;
+    private final PriorityClassifier priorityClassifier;
+
+    @KafkaListener(topics = "${spring.kafka.topics.social-messages}",
+                   groupId = "${spring.kafka.consumer.group-id}",
+                   containerFactory = "asyncAckKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, SocialMessageDTO> record, Acknowledgment ack) throws InterruptedException {
+        SocialMessageDTO messageDTO = record.value();
+        log.debug("Received message from Kafka partition {} offset {}: {}", record.partition(), record.offset(), messageDTO);
+        if (priorityClassifier.isPriority(messageDTO.platform(), messageDTO.content())) {
+            // Analyzed by the priority lane
+            ack.acknowledge();
+            return;
+        }
+
+        SocialMessage message;
+        try {
+            message = analyzerService.ingestMessage(
+                messageDTO.brandId(),
+                messageDTO.content(),
+                messageDTO.platform(),
+                messageDTO.user(),
+                SocialMessage.sourceRecord(record.topic(), record.partition(), record.offset())
+            );
+        } catch (Exception e) {
+            log.error("Error processing message from Kafka", e);
+            ack.acknowledge();
+            return;
+        }
+        if (message.getAnalysisResult() != null) {
+            // Redelivered after it was analyzed
+            ack.acknowledge();
+            return;
+        }
+
+        executor.submit(message.getCustomerId(), () -> analyzerService.analyzeMessage(message))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Error analyzing message {} from Kafka", message.getId(), error);
+                    }
+                    ack.acknowledge();
+                });
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
 import com.nocode.ai.service.BrandAnalyzerService;
+import com.nocode.ai.service.classifier.PriorityClassifier;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,13 +14,19 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @RequiredArgsConstructor
 @ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+@ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "single", matchIfMissing = true)
 public class SocialMediaConsumer {
 
     private final BrandAnalyzerService analyzerService;
+    private final PriorityClassifier priorityClassifier;
 
     @KafkaListener(topics = "${spring.kafka.topics.social-messages}", groupId = "${spring.kafka.consumer.group-id}")
     public void consume(SocialMessageDTO messageDTO) {
         log.info("Received message from Kafka: {}", messageDTO);
+        if (priorityClassifier.isPriority(messageDTO.platform(), messageDTO.content())) {
+            log.debug("Skipping message taken by the priority lane");
+            return;
+        }
         
         try {
             analyzerService.processNewMessage(
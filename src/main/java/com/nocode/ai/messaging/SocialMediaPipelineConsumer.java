@@ -0,0 +1,55 @@
+package com.nocode.ai.messaging;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.messaging.SocialMediaConsumer.SocialMessageDTO;
+import com.nocode.ai.service.classifier.PriorityClassifier;
+import com.nocode.ai.service.pipeline.AnalysisPipeline;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pipeline ingestion mode (app.ingestion.mode=pipeline).
+ * Feeds records into the staged analysis pipeline; the listener blocks while the first stage is full.
+ * Records are acknowledged once they leave the pipeline and committed in partition order.
+ * Messages are stored with their topic, partition and offset, so a record redelivered after a shutdown is not
+ * stored twice.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+@ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "pipeline")
+public class SocialMediaPipelineConsumer {
+
+    private final AnalysisPipeline pipeline;
+    private final PriorityClassifier priorityClassifier;
+
+    @KafkaListener(topics = "${spring.kafka.topics.social-messages}",
+                   groupId = "${spring.kafka.consumer.group-id}",
+                   containerFactory = "asyncAckKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, SocialMessageDTO> record, Acknowledgment ack) throws InterruptedException {
+        SocialMessageDTO messageDTO = record.value();
+        log.debug("Received message from Kafka partition {} offset {}: {}", record.partition(), record.offset(), messageDTO);
+        if (priorityClassifier.isPriority(messageDTO.platform(), messageDTO.content())) {
+            // Analyzed by the priority lane
+            ack.acknowledge();
+            return;
+        }
+
+        pipeline.submit(messageDTO.brandId(), messageDTO.content(), messageDTO.platform(), messageDTO.user(),
+                        SocialMessage.sourceRecord(record.topic(), record.partition(), record.offset()))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Error processing message from Kafka", error);
+                    }
+                    ack.acknowledge();
+                });
+    }
+}
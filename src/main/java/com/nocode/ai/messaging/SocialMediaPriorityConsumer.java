@@ -0,0 +1,43 @@
+package com.nocode.ai.messaging;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.messaging.SocialMediaConsumer.SocialMessageDTO;
+import com.nocode.ai.service.BrandAnalyzerService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Priority lane: analyzes the messages forwarded by {@link PriorityLaneRouter}, whatever app.ingestion.mode is.
+ * These analyses take the short prompt path and the limiter slots reserved by app.priority.reserved-slots.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+@ConditionalOnProperty(name = "app.priority.enabled", havingValue = "true")
+public class SocialMediaPriorityConsumer {
+
+    private final BrandAnalyzerService analyzerService;
+
+    @KafkaListener(topics = "${spring.kafka.topics.priority-messages}",
+                   groupId = "${app.priority.consumer-group-id}",
+                   concurrency = "${app.priority.consumer-concurrency:3}")
+    public void consume(SocialMessageDTO messageDTO) {
+        log.info("Received priority message from Kafka: {}", messageDTO);
+
+        try {
+            analyzerService.processNewMessage(
+                messageDTO.brandId(),
+                messageDTO.content(),
+                messageDTO.platform(),
+                messageDTO.user()
+            );
+        } catch (Exception e) {
+            log.error("Error processing priority message from Kafka", e);
+        }
+    }
+}
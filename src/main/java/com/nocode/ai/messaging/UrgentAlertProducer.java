@@ -0,0 +1,55 @@
+package com.nocode.ai.messaging;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.SocialMessage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends urgent alerts straight to Kafka, bypassing the outbox, so they go out while the analysis is still running.
+ * Alerts are best-effort: a failed send is logged, never retried.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class UrgentAlertProducer {
+
+    private static final int PREVIEW_LENGTH = 280;
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Value("${spring.kafka.topics.alerts}")
+    private String topic;
+
+    public void sendAlert(SocialMessage message, String trigger) {
+        String content = message.getContent();
+        UrgentAlertDTO alert = new UrgentAlertDTO(
+            message.getId(),
+            message.getBrandId(),
+            message.getPlatform(),
+            trigger,
+            content != null && content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content,
+            OffsetDateTime.now()
+        );
+
+        kafkaTemplate.send(topic, message.getBrandId().toString(), alert)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        log.error("Failed to send urgent alert for message {}", message.getId(), e);
+                    } else {
+                        log.debug("Sent urgent alert for message {}", message.getId());
+                    }
+                });
+    }
+
+    public record UrgentAlertDTO(Long messageId, UUID brandId, String platform, String trigger, String contentPreview, OffsetDateTime detectedAt) {}
+}
@@ -0,0 +1,24 @@
+package com.nocode.ai.service;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+
+import com.nocode.ai.domain.model.Brand;
+import com.nocode.ai.domain.model.CustomerIdentity.TrustLevel;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.service.dedup.NearDuplicateDetector.ClusterMembership;
+
+/**
+ * Everything the inference step needs about a persisted message, gathered during enrichment.
+ */
+public record AnalysisContext(
+    SocialMessage message,
+    TrustLevel trustLevel,
+    boolean verificationRequired,
+    String brandInstructions,
+    Brand brand, // null when the brand is not registered
+    ClusterMembership nearDuplicate, // null when the message is not fingerprinted
+    boolean priority, // Priority lane: short prompt path and reserved LLM capacity
+    List<Document> history // Customer history for the prompt, fetched during enrichment
+) {}
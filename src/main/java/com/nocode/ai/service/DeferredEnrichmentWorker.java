@@ -0,0 +1,189 @@
+package com.nocode.ai.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.repository.AnalysisResultRepository;
+import com.nocode.ai.service.execution.BrandRateLimitedException;
+import com.nocode.ai.service.execution.LlmCircuitBreaker;
+import com.nocode.ai.service.execution.LlmUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Re-analyzes results stored as PENDING_ENRICHMENT while the LLM was unavailable, oldest first.
+ * Runs only while the LLM circuit breaker is closed, at no more than max-per-second messages,
+ * and stops at the first call that finds the LLM unavailable again. Runs on its own thread so
+ * long model calls never hold up the other scheduled tasks.
+ * A result whose re-analysis fails for another reason is retried after retry-backoff-ms, doubled per attempt,
+ * and moved to MANUAL_REVIEW after max-attempts, so failing rows never keep newer ones from being reached.
+ * A brand over its LLM rate limit only postpones its own results until its budget refills; the drain goes on
+ * with the other brands.
+ */
+@Component
+@Slf4j
+public class DeferredEnrichmentWorker {
+
+    private final AnalysisResultRepository analysisRepository;
+    private final BrandAnalyzerService analyzerService;
+    private final LlmCircuitBreaker llmCircuitBreaker;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pauseMs;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("deferred-enrichment").daemon().factory());
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong pending = new AtomicLong();
+
+    private final Counter enriched;
+    private final Counter failed;
+    private final Counter exhausted;
+
+    public DeferredEnrichmentWorker(AnalysisResultRepository analysisRepository,
+                                    BrandAnalyzerService analyzerService,
+                                    LlmCircuitBreaker llmCircuitBreaker,
+                                    @Value("${app.analysis.deferred-enrichment.enabled:true}") boolean enabled,
+                                    @Value("${app.analysis.deferred-enrichment.batch-size:50}") int batchSize,
+                                    @Value("${app.analysis.deferred-enrichment.max-per-second:2}") double maxPerSecond,
+                                    @Value("${app.analysis.deferred-enrichment.max-attempts:5}") int maxAttempts,
+                                    @Value("${app.analysis.deferred-enrichment.retry-backoff-ms:60000}") long retryBackoffMs,
+                                    MeterRegistry meterRegistry) {
+        this.analysisRepository = analysisRepository;
+        this.analyzerService = analyzerService;
+        this.llmCircuitBreaker = llmCircuitBreaker;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pauseMs = maxPerSecond > 0 ? (long) (1000 / maxPerSecond) : 0;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+
+        Gauge.builder("analysis.enrichment.pending", pending, AtomicLong::get)
+                .description("Results with a provisional analysis waiting for the LLM")
+                .register(meterRegistry);
+        this.enriched = outcomes(meterRegistry, "enriched");
+        this.failed = outcomes(meterRegistry, "failed");
+        this.exhausted = outcomes(meterRegistry, "manual-review");
+    }
+
+    @Scheduled(fixedDelayString = "${app.analysis.deferred-enrichment.interval-ms:10000}")
+    public void schedule() {
+        if (enabled && running.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+
+    private void drain() {
+        pending.set(analysisRepository.countByStatus(AnalysisResult.Status.PENDING_ENRICHMENT));
+        if (pending.get() == 0 || !llmCircuitBreaker.isClosed()) {
+            return;
+        }
+
+        List<AnalysisResult> batch = analysisRepository.findDue(
+                AnalysisResult.Status.PENDING_ENRICHMENT, OffsetDateTime.now(), PageRequest.of(0, batchSize));
+        Set<UUID> rateLimited = new HashSet<>();
+        for (AnalysisResult result : batch) {
+            if (!llmCircuitBreaker.isClosed()) {
+                return;
+            }
+            if (rateLimited.contains(result.getBrandId())) {
+                continue;
+            }
+            try {
+                analyzerService.enrichDeferred(result);
+                enriched.increment();
+                pending.decrementAndGet();
+            } catch (LlmUnavailableException e) {
+                log.info("LLM unavailable again, pausing deferred enrichment: {}", e.getMessage());
+                return;
+            } catch (BrandRateLimitedException e) {
+                rateLimited.add(result.getBrandId());
+                postpone(result, e);
+                continue;
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.warn("Deferred enrichment of analysis result {} failed: {}", result.getId(), e.getMessage());
+                recordFailure(result);
+            }
+            if (!pause()) {
+                return;
+            }
+        }
+    }
+
+    private void postpone(AnalysisResult result, BrandRateLimitedException e) {
+        log.info("Brand {} is over its LLM rate limit, postponing deferred enrichment of analysis result {} by {}s",
+                result.getBrandId(), result.getId(), e.getRetryAfter().toSeconds());
+        try {
+            analysisRepository.postponeEnrichment(result.getId(), OffsetDateTime.now().plus(e.getRetryAfter()));
+        } catch (RuntimeException failure) {
+            log.warn("Could not postpone the enrichment of analysis result {}: {}", result.getId(), failure.getMessage());
+        }
+    }
+
+    private void recordFailure(AnalysisResult result) {
+        int attempts = result.getEnrichmentAttempts() + 1;
+        boolean giveUp = attempts >= maxAttempts;
+        OffsetDateTime retryAt = OffsetDateTime.now().plus(retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 16)));
+        try {
+            analysisRepository.recordEnrichmentFailure(result.getId(), attempts, giveUp ? null : retryAt,
+                    giveUp ? AnalysisResult.Status.MANUAL_REVIEW : AnalysisResult.Status.PENDING_ENRICHMENT);
+        } catch (RuntimeException e) {
+            log.warn("Could not record the failed enrichment of analysis result {}: {}", result.getId(), e.getMessage());
+            return;
+        }
+        if (giveUp) {
+            exhausted.increment();
+            pending.decrementAndGet();
+            log.warn("Analysis result {} failed enrichment {} times, moved to manual review", result.getId(), attempts);
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private static Counter outcomes(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("analysis.enrichment.deferred")
+                .description("Provisional analyses re-analyzed by the LLM")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
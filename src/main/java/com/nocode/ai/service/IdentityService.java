@@ -1,14 +1,27 @@
 package com.nocode.ai.service;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.nocode.ai.domain.model.CustomerIdentity;
 import com.nocode.ai.domain.model.CustomerIdentity.TrustLevel;
 import com.nocode.ai.domain.model.SocialMessage.ChannelType;
 import com.nocode.ai.domain.repository.CustomerIdentityRepository;
+import com.nocode.ai.domain.repository.CustomerIdentityUpsertRepository;
+import com.nocode.ai.service.cache.IdentityCache;
+import com.nocode.ai.service.identity.CustomerAliasGraph;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,10 +32,15 @@ import lombok.extern.slf4j.Slf4j;
 public class IdentityService {
 
     private final CustomerIdentityRepository identityRepository;
+    private final IdentityCache identityCache;
+    private final LastSeenWriteBehind lastSeen;
+    private final CustomerIdentityUpsertRepository upsertRepository;
+    private final CustomerAliasGraph aliasGraph;
 
     /**
      * Resolves the identity of a customer based on the brand, platform and user ID.
-     * If the identity does not exist, a new one is created.
+     * If the identity does not exist, a new one is created; concurrent first contacts of the same user,
+     * in this instance or another, all get the one identity that won the insert.
      * 
      * @param brandId The ID of the brand
      * @param platformUserId The user ID on the platform (e.g., phone number, handle)
@@ -31,31 +49,74 @@ public class IdentityService {
      */
     @Transactional
     public UUID resolveIdentity(UUID brandId, String platformUserId, ChannelType channelType) {
-        return identityRepository.findByBrandIdAndChannelTypeAndPlatformUserId(brandId, channelType, platformUserId)
-                .map(identity -> {
-                    log.info("Found existing identity for user: {} on channel: {} for brand: {}", platformUserId, channelType, brandId);
-                    // Update last seen
-                    identity.setLastSeenAt(java.time.OffsetDateTime.now());
-                    identityRepository.save(identity);
-                    return identity.getCustomerId();
-                })
-                .orElseGet(() -> {
-                    log.info("Creating new identity for user: {} on channel: {} for brand: {}", platformUserId, channelType, brandId);
-                    UUID newCustomerId = UUID.randomUUID();
-                    CustomerIdentity newIdentity = CustomerIdentity.builder()
-                            .customerId(newCustomerId)
-                            .brandId(brandId)
-                            .channelType(channelType)
-                            .platformUserId(platformUserId)
-                            .trustLevel(TrustLevel.UNVERIFIED)
-                            .build();
-                    identityRepository.save(newIdentity);
-                    return newCustomerId;
-                });
+        return resolve(brandId, platformUserId, channelType).customerId();
+    }
+
+    /**
+     * Same as {@link #resolveIdentity} but also returns the trust level, served from {@link IdentityCache}
+     * for customers seen recently. Last seen is written behind by {@link LastSeenWriteBehind}, so known
+     * customers cost no write and, on a cache hit, no query.
+     * Concurrent first contacts of one new user each run the upsert; its ON CONFLICT makes them agree on one identity.
+     */
+    @Transactional
+    public ResolvedIdentity resolve(UUID brandId, String platformUserId, ChannelType channelType) {
+        IdentityKey key = new IdentityKey(brandId, channelType, platformUserId);
+        ResolvedIdentity cached = identityCache.get(key);
+        if (cached != null) {
+            lastSeen.record(key, OffsetDateTime.now());
+            return cached;
+        }
+
+        ResolvedIdentity resolved = findOrCreate(key);
+        afterCommit(() -> identityCache.put(key, resolved));
+        return resolved;
+    }
+
+    /**
+     * Resolves a whole batch of identities in a single transaction.
+     * Identities that are not cached are found or created together in one upsert round-trip.
+     *
+     * @param keys The identities to resolve
+     * @return The unified Customer ID and trust level for each key
+     */
+    @Transactional
+    public Map<IdentityKey, ResolvedIdentity> resolveIdentities(Collection<IdentityKey> keys) {
+        Map<IdentityKey, ResolvedIdentity> resolved = new LinkedHashMap<>();
+        List<CustomerIdentity> misses = new ArrayList<>();
+        OffsetDateTime now = OffsetDateTime.now();
+        for (IdentityKey key : new LinkedHashSet<>(keys)) {
+            ResolvedIdentity cached = identityCache.get(key);
+            if (cached != null) {
+                resolved.put(key, cached);
+                lastSeen.record(key, now);
+            } else {
+                misses.add(CustomerIdentity.builder()
+                        .brandId(key.brandId())
+                        .channelType(key.channelType())
+                        .platformUserId(key.platformUserId())
+                        .build());
+            }
+        }
+
+        for (CustomerIdentity identity : upsertRepository.findOrCreateAll(misses)) {
+            IdentityKey key = new IdentityKey(identity.getBrandId(), identity.getChannelType(), identity.getPlatformUserId());
+            ResolvedIdentity identityResolved = new ResolvedIdentity(identity.getCustomerId(), identity.getTrustLevel());
+            resolved.put(key, identityResolved);
+            lastSeen.record(key, now);
+            afterCompletion(committed -> {
+                if (committed) {
+                    identityCache.put(key, identityResolved);
+                }
+            });
+        }
+        log.debug("Resolved {} identities, {} of them from the database", resolved.size(), misses.size());
+        return resolved;
     }
 
     /**
      * Links a new identity to an existing customer ID (Identity Merging).
+     * If the identity had another customer ID, that ID becomes an alias of the existing one in
+     * {@link CustomerAliasGraph}, so whatever was stored under it stays reachable.
      */
     @Transactional
     public void linkIdentity(UUID brandId, UUID existingCustomerId, String platformUserId, ChannelType channelType, TrustLevel level) {
@@ -68,17 +129,73 @@ public class IdentityService {
                         .platformUserId(platformUserId)
                         .build());
         
+        if (identity.getCustomerId() != null && !identity.getCustomerId().equals(existingCustomerId)) {
+            aliasGraph.link(identity.getCustomerId(), existingCustomerId);
+        }
         identity.setCustomerId(existingCustomerId);
         identity.setTrustLevel(level);
         identity.setLastSeenAt(java.time.OffsetDateTime.now());
         identity.setVerifiedAt(java.time.OffsetDateTime.now());
         
         identityRepository.save(identity);
+
+        // Evicted now so this instance stops serving the old entry, and again once the new one is visible
+        IdentityKey key = new IdentityKey(brandId, channelType, platformUserId);
+        identityCache.invalidate(key);
+        afterCommit(() -> identityCache.invalidate(key));
     }
 
     public TrustLevel getTrustLevel(UUID brandId, String platformUserId, ChannelType channelType) {
+        IdentityKey key = new IdentityKey(brandId, channelType, platformUserId);
+        ResolvedIdentity cached = identityCache.get(key);
+        if (cached != null) {
+            return cached.trustLevel();
+        }
         return identityRepository.findByBrandIdAndChannelTypeAndPlatformUserId(brandId, channelType, platformUserId)
-                .map(CustomerIdentity::getTrustLevel)
+                .map(identity -> {
+                    ResolvedIdentity resolved = new ResolvedIdentity(identity.getCustomerId(), identity.getTrustLevel());
+                    afterCommit(() -> identityCache.put(key, resolved));
+                    return resolved.trustLevel();
+                })
                 .orElse(TrustLevel.UNVERIFIED);
     }
+
+    private ResolvedIdentity findOrCreate(IdentityKey key) {
+        CustomerIdentity identity = upsertRepository.findOrCreate(key.brandId(), key.channelType(), key.platformUserId());
+        log.info("Resolved identity for user: {} on channel: {} for brand: {}", key.platformUserId(), key.channelType(), key.brandId());
+        lastSeen.record(key, OffsetDateTime.now());
+        return new ResolvedIdentity(identity.getCustomerId(), identity.getTrustLevel());
+    }
+
+    /**
+     * Runs the action after the current transaction commits, or right away outside a transaction.
+     */
+    private static void afterCommit(Runnable action) {
+        afterCompletion(committed -> {
+            if (committed) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Runs the action once the current transaction completed, with whether it committed,
+     * or right away as committed outside a transaction.
+     */
+    private static void afterCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
+    }
+
+    public record IdentityKey(UUID brandId, ChannelType channelType, String platformUserId) {}
+
+    public record ResolvedIdentity(UUID customerId, TrustLevel trustLevel) {}
 }
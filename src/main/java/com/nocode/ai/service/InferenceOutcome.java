@@ -0,0 +1,49 @@
+package com.nocode.ai.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+
+/**
+ * An analysis together with what produced it: a model name, the pre-classifier, a reused near-duplicate analysis,
+ * a cached analysis of identical content, or a provisional classification made while the LLM was unavailable.
+ */
+public record InferenceOutcome(
+    AiAnalysisResponse response,
+    String analyzedBy
+) {
+    public static final String PRE_CLASSIFIER = "pre-classifier";
+    public static final String NEAR_DUPLICATE = "near-duplicate";
+    public static final String CACHE = "cache";
+    public static final String PROVISIONAL = "provisional";
+
+    /**
+     * Whether the analysis came from a model call and is worth learning from.
+     */
+    public boolean fromModel() {
+        return isModel(analyzedBy) && response.confidenceScore() != null && response.confidenceScore() > 0.0;
+    }
+
+    /**
+     * Whether a stored analyzed_by names a model that was actually called. Rows from before analyzed_by was
+     * recorded have none and were all LLM answers.
+     */
+    public static boolean isModel(String analyzedBy) {
+        return analyzedBy == null || !(PRE_CLASSIFIER.equals(analyzedBy) || NEAR_DUPLICATE.equals(analyzedBy)
+                || CACHE.equals(analyzedBy) || PROVISIONAL.equals(analyzedBy));
+    }
+
+    /**
+     * The same analysis, served from the cache instead of a model call.
+     */
+    public InferenceOutcome cached() {
+        return new InferenceOutcome(response, CACHE);
+    }
+
+    /**
+     * Whether the analysis still has to be redone by the LLM.
+     */
+    @JsonIgnore
+    public boolean isProvisional() {
+        return PROVISIONAL.equals(analyzedBy);
+    }
+}
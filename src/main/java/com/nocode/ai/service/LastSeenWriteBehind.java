@@ -0,0 +1,121 @@
+package com.nocode.ai.service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.service.IdentityService.IdentityKey;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects customer_identities.last_seen_at in memory, only the latest per identity, and writes them every
+ * flush-interval-ms with one UPDATE per max-batch-size identities, instead of one UPDATE per message.
+ * last_seen_at can lag by up to the flush interval, and by more while the database is unreachable;
+ * it is flushed once more on shutdown. A flush never moves last_seen_at backwards.
+ */
+@Component
+@Slf4j
+public class LastSeenWriteBehind {
+
+    private static final String UPDATE_SQL = """
+            UPDATE customer_identities c SET last_seen_at = v.seen
+            FROM unnest(?::uuid[], ?::text[], ?::text[], ?::timestamptz[]) AS v(brand_id, channel_type, platform_user_id, seen)
+            WHERE c.brand_id = v.brand_id AND c.channel_type = v.channel_type AND c.platform_user_id = v.platform_user_id
+              AND (c.last_seen_at IS NULL OR c.last_seen_at < v.seen)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxBatchSize;
+    private final Map<IdentityKey, OffsetDateTime> pending = new ConcurrentHashMap<>();
+
+    private final Counter flushed;
+    private final Counter failedFlushes;
+
+    public LastSeenWriteBehind(JdbcTemplate jdbcTemplate,
+                               @Value("${app.identity.last-seen.max-batch-size:1000}") int maxBatchSize,
+                               MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        Gauge.builder("identity.last-seen.pending", pending, Map::size)
+                .description("Identities whose last seen time is waiting to be written")
+                .register(meterRegistry);
+        this.flushed = Counter.builder("identity.last-seen.flushed")
+                .description("Last seen times written to the database")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("identity.last-seen.flush-failures")
+                .description("Batched last seen updates that failed and were kept for the next flush")
+                .register(meterRegistry);
+    }
+
+    public void record(IdentityKey key, OffsetDateTime seenAt) {
+        pending.merge(key, seenAt, (current, seen) -> seen.isAfter(current) ? seen : current);
+    }
+
+    @Scheduled(fixedDelayString = "${app.identity.last-seen.flush-interval-ms:5000}")
+    public void flush() {
+        List<Map.Entry<IdentityKey, OffsetDateTime>> batch = new ArrayList<>();
+        for (IdentityKey key : pending.keySet()) {
+            OffsetDateTime seenAt = pending.remove(key);
+            if (seenAt != null) {
+                batch.add(Map.entry(key, seenAt));
+            }
+            if (batch.size() >= maxBatchSize) {
+                write(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<Map.Entry<IdentityKey, OffsetDateTime>> batch) {
+        UUID[] brandIds = new UUID[batch.size()];
+        String[] channels = new String[batch.size()];
+        String[] users = new String[batch.size()];
+        Timestamp[] seen = new Timestamp[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            IdentityKey key = batch.get(i).getKey();
+            brandIds[i] = key.brandId();
+            channels[i] = key.channelType().name();
+            users[i] = key.platformUserId();
+            seen[i] = Timestamp.from(batch.get(i).getValue().toInstant());
+        }
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(UPDATE_SQL);
+                statement.setArray(1, connection.createArrayOf("uuid", brandIds));
+                statement.setArray(2, connection.createArrayOf("text", channels));
+                statement.setArray(3, connection.createArrayOf("text", users));
+                statement.setArray(4, connection.createArrayOf("timestamptz", seen));
+                return statement;
+            });
+            flushed.increment(batch.size());
+        } catch (RuntimeException e) {
+            failedFlushes.increment();
+            log.warn("Could not write last seen times of {} identities, retrying on the next flush: {}", batch.size(), e.getMessage());
+            batch.forEach(entry -> record(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+}
@@ -1,60 +1,119 @@
 package com.nocode.ai.service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.api.dto.AiAnalysisResponse;
 import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.model.PendingMemory;
 import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.domain.repository.AnalysisResultRepository;
+import com.nocode.ai.domain.repository.PendingMemoryRepository;
+import com.nocode.ai.service.execution.AdaptiveConcurrencyLimiter;
+import com.nocode.ai.service.execution.LlmCircuitBreaker;
+import com.nocode.ai.service.execution.MemoryIngestionExecutor;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Memory Service identified in Phase 2 of the roadmap.
  * Handles summarizing and storing interactions for RAG retrieval.
+ * <p>
+ * In analysis mode (default) the memory is built from the analysis already made: summary, sentiment, category and
+ * keywords. The LLM only summarizes interactions whose analysis confidence is below
+ * app.memory.llm-below-confidence or that have no summary; in llm mode it summarizes every interaction.
+ * Memories are written on the bounded {@link MemoryIngestionExecutor}; spilled ones are replayed from here.
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class MemoryService {
 
-    private final ChatClient.Builder chatClientBuilder;
+    private final ChatClient summarizer;
     private final KnowledgeIngestionService knowledgeIngestionService;
+    private final AdaptiveConcurrencyLimiter llmLimiter;
+    private final LlmCircuitBreaker llmCircuitBreaker;
+    private final ObjectMapper objectMapper;
+    private final MemoryIngestionExecutor ingestionExecutor;
+    private final PendingMemoryRepository pendingMemoryRepository;
+    private final AnalysisResultRepository analysisRepository;
+    private final boolean fromAnalysis;
+    private final double llmBelowConfidence;
+
+    private final Counter analysisMemories;
+    private final Counter llmMemories;
+
+    public MemoryService(ChatClient.Builder chatClientBuilder,
+                         KnowledgeIngestionService knowledgeIngestionService,
+                         AdaptiveConcurrencyLimiter llmLimiter,
+                         LlmCircuitBreaker llmCircuitBreaker,
+                         ObjectMapper objectMapper,
+                         MemoryIngestionExecutor ingestionExecutor,
+                         PendingMemoryRepository pendingMemoryRepository,
+                         AnalysisResultRepository analysisRepository,
+                         @Value("${app.memory.mode:analysis}") String mode,
+                         @Value("${app.memory.llm-below-confidence:0.6}") double llmBelowConfidence,
+                         MeterRegistry meterRegistry) {
+        // Dedicated ChatClient for summarization so it does not interfere with the main analysis context
+        this.summarizer = chatClientBuilder.build();
+        this.knowledgeIngestionService = knowledgeIngestionService;
+        this.llmLimiter = llmLimiter;
+        this.llmCircuitBreaker = llmCircuitBreaker;
+        this.objectMapper = objectMapper;
+        this.ingestionExecutor = ingestionExecutor;
+        this.pendingMemoryRepository = pendingMemoryRepository;
+        this.analysisRepository = analysisRepository;
+        this.fromAnalysis = !"llm".equalsIgnoreCase(mode);
+        this.llmBelowConfidence = llmBelowConfidence;
+
+        this.analysisMemories = memories(meterRegistry, "analysis");
+        this.llmMemories = memories(meterRegistry, "llm");
+    }
 
     /**
      * Summarizes the interaction asynchronously and saves it to the vector store.
+     * Queued on the memory ingestion executor; when its queue is full the overflow policy applies.
      */
-    @Async
     public void saveInteractionMemory(SocialMessage message, AnalysisResult result) {
+        ingestionExecutor.submit(result.getId(), () -> writeMemory(message, result));
+    }
+
+    /**
+     * Re-queues memories spilled while the ingestion queue was full, oldest first, into at most half the free
+     * queue slots so the replay itself does not overflow the queue again.
+     */
+    @Scheduled(fixedDelayString = "${app.memory.executor.replay-interval-ms:10000}")
+    public void replaySpilled() {
+        int room = ingestionExecutor.remainingCapacity() / 2;
+        if (room == 0) {
+            return;
+        }
+        List<PendingMemory> spilled = pendingMemoryRepository.findAllByOrderByIdAsc(PageRequest.of(0, room));
+        for (PendingMemory pending : spilled) {
+            analysisRepository.findById(pending.getAnalysisResultId())
+                    .ifPresent(result -> saveInteractionMemory(result.getMessage(), result));
+            pendingMemoryRepository.delete(pending);
+        }
+        if (!spilled.isEmpty()) {
+            log.info("Replayed {} spilled conversation memories", spilled.size());
+        }
+    }
+
+    private void writeMemory(SocialMessage message, AnalysisResult result) {
         log.info("Starting asynchronous memory summarization for message ID: {}", message.getId());
-        
+
         try {
-            // Build a dedicated ChatClient for summarization to avoid interfering with the main analysis context
-            ChatClient summarizer = chatClientBuilder.build();
-
-            String memoryPrompt = String.format("""
-                Summarize this customer interaction in ONE concise sentence focusing on facts and sentiment for future RAG retrieval.
-                Platform: %s
-                User: %s
-                Message: %s
-                Sentiment: %s
-                Category: %s
-                """, 
-                message.getPlatform(),
-                message.getPlatformUser(),
-                message.getContent(),
-                result.getSentiment(),
-                result.getCategory()
-            );
-
-            String summary = summarizer.prompt()
-                    .user(memoryPrompt)
-                    .call()
-                    .content();
+            boolean useAnalysis = useAnalysis(result);
+            String summary = useAnalysis ? analysisMemory(message, result) : summarize(message, result);
 
             if (summary == null || summary.isEmpty()) {
                 log.warn("Empty summary generated for memory of message ID: {}", message.getId());
@@ -75,14 +134,83 @@ public class MemoryService {
             metadata.put("sentiment", result.getSentiment().name());
             metadata.put("category", result.getCategory());
             metadata.put("type", "conversation_history");
+            metadata.put("memory_source", useAnalysis ? "analysis" : "llm");
             metadata.put("date", result.getAnalyzedAt().toString());
 
             // Save to vector store via KnowledgeIngestionService
             knowledgeIngestionService.ingestText(summary, metadata);
-            
+            (useAnalysis ? analysisMemories : llmMemories).increment();
+
             log.info("Successfully saved asynchronous conversation memory for message ID: {}", message.getId());
         } catch (Exception e) {
             log.error("Failed to save conversation memory for message ID: {}", message.getId(), e);
         }
     }
+
+    private boolean useAnalysis(AnalysisResult result) {
+        if (!fromAnalysis || result.getSummary() == null || result.getSummary().isBlank()) {
+            return false;
+        }
+        return result.getConfidenceScore() != null && result.getConfidenceScore() >= llmBelowConfidence;
+    }
+
+    /**
+     * One memory line from the structured analysis, in the same facts-and-sentiment shape the LLM is asked for.
+     */
+    String analysisMemory(SocialMessage message, AnalysisResult result) {
+        StringBuilder memory = new StringBuilder()
+                .append(result.getSummary().strip())
+                .append(" (").append(message.getPlatform())
+                .append(", sentiment ").append(result.getSentiment())
+                .append(", category ").append(result.getCategory()).append(')');
+        List<String> keywords = keywords(result);
+        if (!keywords.isEmpty()) {
+            memory.append(" Keywords: ").append(String.join(", ", keywords)).append('.');
+        }
+        return memory.toString();
+    }
+
+    private List<String> keywords(AnalysisResult result) {
+        if (result.getRawAiResponse() == null) {
+            return List.of();
+        }
+        try {
+            List<String> keywords = objectMapper.readValue(result.getRawAiResponse(), AiAnalysisResponse.class).keywords();
+            return keywords == null ? List.of() : keywords.stream()
+                    .filter(keyword -> keyword != null && !keyword.isBlank())
+                    .toList();
+        } catch (Exception e) {
+            log.debug("No keywords in the raw response of analysis {}: {}", result.getId(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private String summarize(SocialMessage message, AnalysisResult result) {
+        String memoryPrompt = String.format("""
+            Summarize this customer interaction in ONE concise sentence focusing on facts and sentiment for future RAG retrieval.
+            Platform: %s
+            User: %s
+            Message: %s
+            Sentiment: %s
+            Category: %s
+            """,
+            message.getPlatform(),
+            message.getPlatformUser(),
+            message.getContent(),
+            result.getSentiment(),
+            result.getCategory()
+        );
+
+        return llmLimiter.execute(message.getBrandId(), "memory-summary", () -> llmCircuitBreaker.execute(() -> summarizer.prompt()
+                .user(memoryPrompt)
+                .call()
+                .content()));
+    }
+
+    private static Counter memories(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("memory.documents")
+                .description("Conversation memories saved by summary source; analysis means an LLM call was saved")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
 }
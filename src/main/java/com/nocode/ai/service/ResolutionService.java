@@ -2,11 +2,13 @@ package com.nocode.ai.service;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.nocode.ai.domain.model.AnalysisResult;
 import com.nocode.ai.domain.repository.AnalysisResultRepository;
 import com.nocode.ai.messaging.AnalysisResultProducer;
+import com.nocode.ai.service.execution.AdaptiveConcurrencyLimiter;
+import com.nocode.ai.service.execution.LlmCircuitBreaker;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,8 +21,15 @@ public class ResolutionService {
     private final AnalysisResultRepository resultRepository;
     private final ChatClient.Builder chatClientBuilder;
     private final AnalysisResultProducer resultProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final AdaptiveConcurrencyLimiter llmLimiter;
+    private final LlmCircuitBreaker llmCircuitBreaker;
 
-    @Transactional
+    /**
+     * Resolves a case. The closing message is generated outside any transaction; the update is
+     * written in a short transaction and fails with an optimistic locking error if the result
+     * was modified in the meantime.
+     */
     public void resolveCase(Long analysisResultId, String resolutionNotes) {
         AnalysisResult result = resultRepository.findById(analysisResultId)
                 .orElseThrow(() -> new IllegalArgumentException("Analysis result not found"));
@@ -29,11 +38,13 @@ public class ResolutionService {
         String publicClosingMessage = generatePublicClosingMessage(result, resolutionNotes);
         result.setPublicClosingMessage(publicClosingMessage);
         result.setStatus(AnalysisResult.Status.RESOLVED);
-        resultRepository.save(result);
+        transactionTemplate.executeWithoutResult(status -> {
+            AnalysisResult savedResult = resultRepository.save(result);
 
-        // Publish to Kafka so the outbound connector can post it back to the original platform
-        // Using the existing producer as an example - in a real app, this might go to a 'public-replies' topic
-        resultProducer.publishResult(result); 
+            // Publish to Kafka (via the outbox) so the outbound connector can post it back to the original platform
+            // Using the existing producer as an example - in a real app, this might go to a 'public-replies' topic
+            resultProducer.publishResult(savedResult);
+        });
         
         log.info("Public closing message generated: {}", publicClosingMessage);
     }
@@ -41,13 +52,13 @@ public class ResolutionService {
     private String generatePublicClosingMessage(AnalysisResult result, String notes) {
         ChatClient client = chatClientBuilder.build();
         
-        return client.prompt()
+        return llmLimiter.execute(result.getBrandId(), "closing-message", () -> llmCircuitBreaker.execute(() -> client.prompt()
                 .system("You are a Brand Reputation Assistant. Generate a SHORT, polite, and professional public reply " +
                         "for a social media thread (Instagram/Twitter) informing that the customer's issue has been resolved " +
                         "privately. Mention that we are happy to help and ask for feedback if they wish.")
                 .user(String.format("Original complaint: %s. Resolution summary: %s. Channel: %s", 
                         result.getMessage().getContent(), notes, result.getMessage().getPlatform()))
                 .call()
-                .content();
+                .content()));
     }
 }
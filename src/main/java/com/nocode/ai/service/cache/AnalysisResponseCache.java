@@ -0,0 +1,190 @@
+package com.nocode.ai.service.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.service.InferenceOutcome;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two-tier cache (in-process LRU, then Redis) of model responses keyed by brand and normalized content hash.
+ * <p>
+ * Concurrent misses on the same key are coalesced: only the first caller invokes the loader,
+ * the others wait for its result. Responses from failed analyses (confidence 0) are never cached.
+ * Only the caller that ran the model gets the model's outcome; hits and coalesced callers get it as
+ * {@link InferenceOutcome#CACHE}, so the repost is neither stored as a model answer nor learned again.
+ * Redis is optional; when it is unreachable the tier is skipped for a short back-off period.
+ */
+@Component
+@Slf4j
+public class AnalysisResponseCache {
+
+    private static final String REDIS_PREFIX = "analysis:outcome:";
+    private static final long REDIS_BACKOFF_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private final LocalLruCache<String, InferenceOutcome> local;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final boolean enabled;
+    private final ConcurrentHashMap<String, CompletableFuture<InferenceOutcome>> inFlight = new ConcurrentHashMap<>();
+    private volatile long redisRetryAtNanos;
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter coalesced;
+    private final Counter misses;
+
+    public AnalysisResponseCache(@Value("${app.cache.enabled:true}") boolean enabled,
+                                 @Value("${app.cache.redis-enabled:true}") boolean redisEnabled,
+                                 @Value("${app.cache.ttl-minutes:60}") long ttlMinutes,
+                                 @Value("${app.cache.max-entries:10000}") int maxEntries,
+                                 ObjectProvider<StringRedisTemplate> redisTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.local = new LocalLruCache<>(maxEntries, ttl);
+        this.redis = redisEnabled ? redisTemplate.getIfAvailable() : null;
+        this.objectMapper = objectMapper;
+        this.redisRetryAtNanos = System.nanoTime();
+
+        this.localHits = requests(meterRegistry, "local_hit");
+        this.redisHits = requests(meterRegistry, "redis_hit");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("analysis.cache.local.size", local, LocalLruCache::size)
+                .description("Entries in the in-process analysis cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached response for this brand and content, or computes it once with the loader.
+     *
+     * @param brandId The brand the message belongs to
+     * @param content The raw message content; it is normalized before hashing
+     * @param verificationRequired Part of the key because it changes the suggested actions
+     * @param loader Calls the model on a miss
+     */
+    public InferenceOutcome getOrCompute(UUID brandId, String content, boolean verificationRequired,
+                                         Supplier<InferenceOutcome> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        String key = brandId + ":" + (verificationRequired ? "unverified" : "verified") + ":" + contentHash(content);
+
+        InferenceOutcome cached = local.get(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached.cached();
+        }
+
+        CompletableFuture<InferenceOutcome> flight = new CompletableFuture<>();
+        CompletableFuture<InferenceOutcome> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            try {
+                return leader.join().cached();
+            } catch (Exception e) {
+                log.debug("Coalesced analysis for key {} failed, computing it directly", key);
+                return loader.get();
+            }
+        }
+
+        try {
+            InferenceOutcome response = readRedis(key);
+            if (response != null) {
+                redisHits.increment();
+                local.put(key, response);
+                response = response.cached();
+            } else {
+                misses.increment();
+                response = loader.get();
+                if (isCacheable(response)) {
+                    local.put(key, response);
+                    writeRedis(key, response);
+                }
+            }
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    static String contentHash(String content) {
+        String normalized = content == null ? "" : content.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isCacheable(InferenceOutcome outcome) {
+        return outcome != null && outcome.response().confidenceScore() != null && outcome.response().confidenceScore() > 0.0;
+    }
+
+    private InferenceOutcome readRedis(String key) {
+        if (!redisAvailable()) {
+            return null;
+        }
+        try {
+            String json = redis.opsForValue().get(REDIS_PREFIX + key);
+            return json == null ? null : objectMapper.readValue(json, InferenceOutcome.class);
+        } catch (Exception e) {
+            redisFailed(e);
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, InferenceOutcome response) {
+        if (!redisAvailable()) {
+            return;
+        }
+        try {
+            redis.opsForValue().set(REDIS_PREFIX + key, objectMapper.writeValueAsString(response), ttl);
+        } catch (Exception e) {
+            redisFailed(e);
+        }
+    }
+
+    private boolean redisAvailable() {
+        return redis != null && System.nanoTime() - redisRetryAtNanos >= 0;
+    }
+
+    private void redisFailed(Exception e) {
+        log.warn("Redis analysis cache unavailable, using local tier only for 30s: {}", e.getMessage());
+        redisRetryAtNanos = System.nanoTime() + REDIS_BACKOFF_NANOS;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("analysis.cache.requests")
+                .description("Analysis cache lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
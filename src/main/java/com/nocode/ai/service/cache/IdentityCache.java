@@ -0,0 +1,160 @@
+package com.nocode.ai.service.cache;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.CustomerIdentity.TrustLevel;
+import com.nocode.ai.service.IdentityService.IdentityKey;
+import com.nocode.ai.service.IdentityService.ResolvedIdentity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two-tier cache (in-process LRU, then Redis) of resolved identities keyed by brand, channel and platform user.
+ * <p>
+ * Entries are written once the resolving transaction committed and invalidated when an identity is linked.
+ * Invalidation reaches Redis and the local tier of this instance only; other instances may serve the old
+ * customer ID and trust level until their entry expires, so app.identity-cache.ttl-minutes bounds staleness.
+ * Redis is optional; when it is unreachable the tier is skipped for a short back-off period.
+ */
+@Component
+@Slf4j
+public class IdentityCache {
+
+    private static final String REDIS_PREFIX = "identity:";
+    private static final long REDIS_BACKOFF_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private final LocalLruCache<IdentityKey, ResolvedIdentity> local;
+    private final StringRedisTemplate redis;
+    private final Duration ttl;
+    private final boolean enabled;
+    private volatile long redisRetryAtNanos;
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+
+    public IdentityCache(@Value("${app.identity-cache.enabled:true}") boolean enabled,
+                         @Value("${app.identity-cache.redis-enabled:true}") boolean redisEnabled,
+                         @Value("${app.identity-cache.ttl-minutes:10}") long ttlMinutes,
+                         @Value("${app.identity-cache.max-entries:50000}") int maxEntries,
+                         ObjectProvider<StringRedisTemplate> redisTemplate,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.local = new LocalLruCache<>(maxEntries, ttl);
+        this.redis = redisEnabled ? redisTemplate.getIfAvailable() : null;
+        this.redisRetryAtNanos = System.nanoTime();
+
+        this.localHits = requests(meterRegistry, "local_hit");
+        this.redisHits = requests(meterRegistry, "redis_hit");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("identity.cache.local.size", local, LocalLruCache::size)
+                .description("Entries in the in-process identity cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The cached identity, or null if it has to be read from the database.
+     */
+    public ResolvedIdentity get(IdentityKey key) {
+        if (!enabled) {
+            return null;
+        }
+        ResolvedIdentity cached = local.get(key);
+        if (cached != null) {
+            localHits.increment();
+            return cached;
+        }
+        cached = readRedis(key);
+        if (cached != null) {
+            redisHits.increment();
+            local.put(key, cached);
+            return cached;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(IdentityKey key, ResolvedIdentity identity) {
+        if (!enabled) {
+            return;
+        }
+        local.put(key, identity);
+        writeRedis(key, identity);
+    }
+
+    public void invalidate(IdentityKey key) {
+        if (!enabled) {
+            return;
+        }
+        local.invalidate(key);
+        if (redisAvailable()) {
+            try {
+                redis.delete(redisKey(key));
+            } catch (Exception e) {
+                redisFailed(e);
+            }
+        }
+    }
+
+    private ResolvedIdentity readRedis(IdentityKey key) {
+        if (!redisAvailable()) {
+            return null;
+        }
+        try {
+            String value = redis.opsForValue().get(redisKey(key));
+            if (value == null) {
+                return null;
+            }
+            int separator = value.indexOf(':');
+            return new ResolvedIdentity(UUID.fromString(value.substring(0, separator)),
+                    TrustLevel.valueOf(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.debug("Ignoring unreadable identity cache entry for {}: {}", key, e.getMessage());
+            return null;
+        } catch (Exception e) {
+            redisFailed(e);
+            return null;
+        }
+    }
+
+    private void writeRedis(IdentityKey key, ResolvedIdentity identity) {
+        if (!redisAvailable()) {
+            return;
+        }
+        try {
+            redis.opsForValue().set(redisKey(key), identity.customerId() + ":" + identity.trustLevel().name(), ttl);
+        } catch (Exception e) {
+            redisFailed(e);
+        }
+    }
+
+    private static String redisKey(IdentityKey key) {
+        return REDIS_PREFIX + key.brandId() + ":" + key.channelType() + ":" + key.platformUserId();
+    }
+
+    private boolean redisAvailable() {
+        return redis != null && System.nanoTime() - redisRetryAtNanos >= 0;
+    }
+
+    private void redisFailed(Exception e) {
+        log.warn("Redis identity cache unavailable, using local tier only for 30s: {}", e.getMessage());
+        redisRetryAtNanos = System.nanoTime() + REDIS_BACKOFF_NANOS;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("identity.cache.requests")
+                .description("Identity cache lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
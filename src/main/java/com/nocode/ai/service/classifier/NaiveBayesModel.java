@@ -0,0 +1,117 @@
+package com.nocode.ai.service.classifier;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Incremental multinomial naive Bayes over word tokens with Laplace smoothing.
+ * Safe for concurrent training and prediction.
+ */
+public class NaiveBayesModel {
+
+    private final Map<String, Integer> documentsPerLabel = new HashMap<>();
+    private final Map<String, Map<String, Integer>> tokenCountsPerLabel = new HashMap<>();
+    private final Map<String, Integer> tokensPerLabel = new HashMap<>();
+    private final Map<String, Integer> vocabulary = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int documents;
+
+    public record Prediction(String label, double probability) {}
+
+    public void learn(List<String> tokens, String label) {
+        if (label == null || tokens.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            documents++;
+            documentsPerLabel.merge(label, 1, Integer::sum);
+            Map<String, Integer> counts = tokenCountsPerLabel.computeIfAbsent(label, l -> new HashMap<>());
+            for (String token : tokens) {
+                counts.merge(token, 1, Integer::sum);
+                vocabulary.merge(token, 1, Integer::sum);
+            }
+            tokensPerLabel.merge(label, tokens.size(), Integer::sum);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Most likely label with its posterior probability, or null if the model has not been trained.
+     */
+    public Prediction predict(List<String> tokens) {
+        lock.readLock().lock();
+        try {
+            if (documents == 0) {
+                return null;
+            }
+            Map<String, Double> logScores = new HashMap<>();
+            for (Map.Entry<String, Integer> label : documentsPerLabel.entrySet()) {
+                logScores.put(label.getKey(), logScore(tokens, label.getKey(), label.getValue()));
+            }
+
+            String best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Map.Entry<String, Double> score : logScores.entrySet()) {
+                if (score.getValue() > bestScore) {
+                    best = score.getKey();
+                    bestScore = score.getValue();
+                }
+            }
+            // Normalize with log-sum-exp to get the posterior of the best label
+            double sum = 0.0;
+            for (double score : logScores.values()) {
+                sum += Math.exp(score - bestScore);
+            }
+            return new Prediction(best, 1.0 / sum);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The message tokens that are most indicative of the label, best first.
+     */
+    public List<String> topFeatures(List<String> tokens, String label, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = tokenCountsPerLabel.getOrDefault(label, Map.of());
+            int labelTokens = tokensPerLabel.getOrDefault(label, 0);
+            int allTokens = tokensPerLabel.values().stream().mapToInt(Integer::intValue).sum();
+            return new LinkedHashSet<>(tokens).stream()
+                    .filter(token -> counts.containsKey(token))
+                    .sorted(Comparator.comparingDouble((String token) ->
+                            ((double) counts.get(token) / Math.max(1, labelTokens))
+                                    / ((double) vocabulary.get(token) / Math.max(1, allTokens))).reversed())
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documents() {
+        lock.readLock().lock();
+        try {
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double logScore(List<String> tokens, String label, int labelDocuments) {
+        Map<String, Integer> counts = tokenCountsPerLabel.getOrDefault(label, Map.of());
+        double denominator = tokensPerLabel.getOrDefault(label, 0) + vocabulary.size() + 1.0;
+        double score = Math.log((double) labelDocuments / documents);
+        for (String token : tokens) {
+            score += Math.log((counts.getOrDefault(token, 0) + 1.0) / denominator);
+        }
+        return score;
+    }
+}
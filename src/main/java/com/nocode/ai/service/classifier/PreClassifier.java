@@ -0,0 +1,208 @@
+package com.nocode.ai.service.classifier;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.model.AnalysisResult.Sentiment;
+import com.nocode.ai.domain.model.Brand;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.domain.model.SocialMessage.ChannelType;
+import com.nocode.ai.domain.repository.AnalysisResultRepository;
+import com.nocode.ai.service.InferenceOutcome;
+import com.nocode.ai.service.dedup.SimHash;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * First inference tier: naive Bayes sentiment and category models trained from stored analysis results.
+ * <p>
+ * A message is answered without the LLM only when both predictions clear the brand's confidence threshold.
+ * Complaint platforms, URGENT predictions and anything below the threshold still go to the LLM,
+ * and nothing is skipped until the models have seen app.classifier.min-samples results.
+ * Every new result that called the model is learned as soon as it is saved; cached, reused and provisional
+ * analyses are not, so reposted content does not skew the priors towards its label.
+ */
+@Component
+@Slf4j
+public class PreClassifier {
+
+    private static final int KEYWORDS = 5;
+
+    private final NaiveBayesModel sentiments = new NaiveBayesModel();
+    private final NaiveBayesModel categories = new NaiveBayesModel();
+    private final AnalysisResultRepository analysisRepository;
+    private final boolean enabled;
+    private final double defaultThreshold;
+    private final int minSamples;
+    private final int bootstrapSize;
+    private final Set<ChannelType> llmOnlyChannels;
+
+    private final Counter answered;
+    private final Counter escalated;
+
+    public PreClassifier(AnalysisResultRepository analysisRepository,
+                         @Value("${app.classifier.enabled:true}") boolean enabled,
+                         @Value("${app.classifier.confidence-threshold:0.95}") double defaultThreshold,
+                         @Value("${app.classifier.min-samples:200}") int minSamples,
+                         @Value("${app.classifier.bootstrap-size:5000}") int bootstrapSize,
+                         @Value("${app.classifier.llm-only-channels:RECLAME_AQUI,CONSUMIDOR_GOV}") String[] llmOnlyChannels,
+                         MeterRegistry meterRegistry) {
+        this.analysisRepository = analysisRepository;
+        this.enabled = enabled;
+        this.defaultThreshold = defaultThreshold;
+        this.minSamples = minSamples;
+        this.bootstrapSize = bootstrapSize;
+        this.llmOnlyChannels = Arrays.stream(llmOnlyChannels)
+                .map(channel -> ChannelType.valueOf(channel.strip().toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toUnmodifiableSet());
+
+        this.answered = decisions(meterRegistry, "answered");
+        this.escalated = decisions(meterRegistry, "escalated");
+    }
+
+    /**
+     * Trains both models from the most recent stored results that came from the LLM, once per distinct content.
+     * Rows stored before cache hits were marked as such cannot be told apart, so repeated content is skipped.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<AnalysisResult> results = analysisRepository
+                    .findAll(PageRequest.of(0, bootstrapSize, Sort.by(Sort.Direction.DESC, "id")))
+                    .getContent();
+            int learned = 0;
+            Set<List<String>> seen = new HashSet<>();
+            for (AnalysisResult result : results) {
+                if (result.getMessage() == null || result.getSourceResultId() != null
+                        || !InferenceOutcome.isModel(result.getAnalyzedBy())
+                        || result.getConfidenceScore() == null || result.getConfidenceScore() <= 0.0
+                        || !seen.add(SimHash.tokens(result.getMessage().getContent()))) {
+                    continue;
+                }
+                learn(result.getMessage().getContent(), result.getSentiment(), result.getCategory());
+                learned++;
+            }
+            log.info("Pre-classifier trained on {} stored analysis results", learned);
+        } catch (RuntimeException e) {
+            log.warn("Could not train pre-classifier from stored results, starting empty: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Learns from an analysis the LLM just produced for this message.
+     */
+    public void learn(SocialMessage message, AiAnalysisResponse response) {
+        if (enabled) {
+            learn(message.getContent(), response.sentiment(), response.category());
+        }
+    }
+
+    /**
+     * Answers the message locally when confident enough.
+     *
+     * @param message The persisted message
+     * @param brand The message's brand, for its threshold override; may be null
+     * @param verificationRequired Whether the author still has to link a verified account
+     * @return The analysis, or empty when the message must go to the LLM
+     */
+    public Optional<AiAnalysisResponse> classify(SocialMessage message, Brand brand, boolean verificationRequired) {
+        if (!enabled || sentiments.documents() < minSamples || llmOnlyChannels.contains(message.getChannelType())) {
+            return Optional.empty();
+        }
+        List<String> tokens = SimHash.tokens(message.getContent());
+        if (tokens.isEmpty()) {
+            return Optional.empty();
+        }
+
+        NaiveBayesModel.Prediction sentiment = sentiments.predict(tokens);
+        NaiveBayesModel.Prediction category = categories.predict(tokens);
+        double confidence = Math.min(sentiment.probability(), category.probability());
+        double threshold = brand != null && brand.getClassifierThreshold() != null
+                ? brand.getClassifierThreshold()
+                : defaultThreshold;
+
+        if (confidence < threshold || Sentiment.URGENT.name().equals(sentiment.label())) {
+            escalated.increment();
+            return Optional.empty();
+        }
+
+        answered.increment();
+        log.debug("Pre-classified message {} as {}/{} ({})", message.getId(), sentiment.label(), category.label(), confidence);
+        return Optional.of(new AiAnalysisResponse(
+                Sentiment.valueOf(sentiment.label()),
+                category.label(),
+                "Pre-classified as " + category.label() + " with " + sentiment.label() + " sentiment.",
+                confidence,
+                categories.topFeatures(tokens, category.label(), KEYWORDS),
+                verificationRequired ? List.of("Request account linkage for history access") : List.of(),
+                false,
+                verificationRequired
+        ));
+    }
+
+    /**
+     * Best-effort analysis used while the LLM is unavailable: the most likely labels regardless of any threshold,
+     * or NEUTRAL/UNCATEGORIZED while nothing was learned yet. Only a predicted URGENT sentiment asks for urgent attention.
+     */
+    public AiAnalysisResponse provisional(SocialMessage message, boolean verificationRequired) {
+        List<String> tokens = SimHash.tokens(message.getContent());
+        NaiveBayesModel.Prediction sentiment = tokens.isEmpty() ? null : sentiments.predict(tokens);
+        NaiveBayesModel.Prediction category = tokens.isEmpty() ? null : categories.predict(tokens);
+        List<String> actions = verificationRequired
+                ? List.of("Pending LLM analysis", "Request account linkage for history access")
+                : List.of("Pending LLM analysis");
+
+        if (sentiment == null || category == null) {
+            return new AiAnalysisResponse(Sentiment.NEUTRAL, "UNCATEGORIZED", "Provisional analysis, pending LLM enrichment.",
+                    0.0, List.of(), actions, false, verificationRequired);
+        }
+        boolean urgent = Sentiment.URGENT.name().equals(sentiment.label());
+        return new AiAnalysisResponse(
+                Sentiment.valueOf(sentiment.label()),
+                category.label(),
+                "Provisionally classified as " + category.label() + " with " + sentiment.label() + " sentiment, pending LLM enrichment.",
+                Math.min(sentiment.probability(), category.probability()),
+                categories.topFeatures(tokens, category.label(), KEYWORDS),
+                actions,
+                urgent,
+                verificationRequired
+        );
+    }
+
+    private void learn(String content, Sentiment sentiment, String category) {
+        if (sentiment == null || category == null || category.isBlank()) {
+            return;
+        }
+        List<String> tokens = SimHash.tokens(content);
+        sentiments.learn(tokens, sentiment.name());
+        categories.learn(tokens, category.strip().toUpperCase(Locale.ROOT));
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("analysis.preclassifier.decisions")
+                .description("Pre-classifier decisions on messages eligible for it")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,81 @@
+package com.nocode.ai.service.classifier;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.domain.model.SocialMessage.ChannelType;
+
+/**
+ * Decides at intake whether a message takes the priority lane: messages from high-impact channels
+ * (complaint platforms, WhatsApp) and messages mentioning legal or fraud keywords.
+ * The decision only depends on platform and content, so the router and the bulk consumers always agree.
+ */
+@Component
+public class PriorityClassifier {
+
+    private final boolean enabled;
+    private final Set<ChannelType> channels;
+    private final List<String> keywords;
+
+    public PriorityClassifier(@Value("${app.priority.enabled:false}") boolean enabled,
+                              @Value("${app.priority.channels:RECLAME_AQUI,CONSUMIDOR_GOV,WHATSAPP}") String[] channels,
+                              @Value("${app.priority.keywords:}") String[] keywords) {
+        this.enabled = enabled;
+        this.channels = Arrays.stream(channels)
+                .map(channel -> ChannelType.valueOf(channel.strip().toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toUnmodifiableSet());
+        this.keywords = Arrays.stream(keywords)
+                .map(keyword -> keyword.strip().toLowerCase(Locale.ROOT))
+                .filter(keyword -> !keyword.isEmpty())
+                .toList();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isPriority(SocialMessage message) {
+        return isPriority(message.getChannelType(), message.getContent());
+    }
+
+    /**
+     * Classifies a message that has not been persisted yet.
+     *
+     * @param platform Platform name as received, e.g. "RECLAME_AQUI"
+     */
+    public boolean isPriority(String platform, String content) {
+        return isPriority(channelOf(platform), content);
+    }
+
+    private boolean isPriority(ChannelType channel, String content) {
+        if (!enabled) {
+            return false;
+        }
+        if (channel != null && channels.contains(channel)) {
+            return true;
+        }
+        if (content == null || keywords.isEmpty()) {
+            return false;
+        }
+        String text = content.toLowerCase(Locale.ROOT);
+        return keywords.stream().anyMatch(text::contains);
+    }
+
+    private static ChannelType channelOf(String platform) {
+        if (platform == null) {
+            return null;
+        }
+        try {
+            return ChannelType.valueOf(platform.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.nocode.ai.service.dedup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming near-duplicate detector for viral reposts and copy-paste campaigns.
+ * <p>
+ * Each brand has an LSH index over 64-bit SimHash fingerprints split into max-hamming-distance + 1 bands,
+ * so any two fingerprints within the distance share at least one band exactly (pigeonhole).
+ * The first message of a cluster (the leader) is analyzed normally; later members reuse its
+ * analysis. If the leader fails, the next member to arrive becomes the new leader.
+ * Clusters idle for longer than the window are dropped.
+ * <p>
+ * Cluster size is recorded as analysis.near-duplicate.cluster.size and logged when it
+ * reaches app.dedup.crisis-cluster-size, as an early crisis signal.
+ */
+@Component
+@Slf4j
+public class NearDuplicateDetector {
+
+    private final boolean enabled;
+    private final int bands;
+    private final int maxDistance;
+    private final int minTokens;
+    private final int crisisClusterSize;
+    private final long windowNanos;
+    private final Map<UUID, BrandIndex> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong clusterIds = new AtomicLong();
+    private final DistributionSummary clusterSizes;
+
+    public NearDuplicateDetector(@Value("${app.dedup.enabled:true}") boolean enabled,
+                                 @Value("${app.dedup.max-hamming-distance:7}") int maxDistance,
+                                 @Value("${app.dedup.min-tokens:5}") int minTokens,
+                                 @Value("${app.dedup.window-minutes:30}") long windowMinutes,
+                                 @Value("${app.dedup.crisis-cluster-size:50}") int crisisClusterSize,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDistance = Math.clamp(maxDistance, 0, 15);
+        this.bands = this.maxDistance + 1;
+        this.minTokens = minTokens;
+        this.windowNanos = Duration.ofMinutes(windowMinutes).toNanos();
+        this.crisisClusterSize = crisisClusterSize;
+        this.clusterSizes = DistributionSummary.builder("analysis.near-duplicate.cluster.size")
+                .description("Size of the near-duplicate cluster a message joined")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Places a message into the cluster of a near-identical recent message of the same brand,
+     * or opens a new cluster with this message as leader.
+     *
+     * @return The membership, or empty when detection is disabled or the text is too short to fingerprint
+     */
+    public Optional<ClusterMembership> assign(UUID brandId, String content) {
+        if (!enabled || brandId == null) {
+            return Optional.empty();
+        }
+        List<String> tokens = SimHash.tokens(content);
+        if (tokens.size() < minTokens) {
+            return Optional.empty();
+        }
+        long fingerprint = SimHash.fingerprint(tokens);
+        ClusterMembership membership = indexes.computeIfAbsent(brandId, id -> new BrandIndex())
+                .assign(fingerprint, System.nanoTime());
+
+        int size = membership.clusterSize();
+        clusterSizes.record(size);
+        if (size == crisisClusterSize) {
+            log.warn("Near-duplicate cluster {} for brand {} reached {} messages within {} minutes: possible crisis or bot wave",
+                    membership.cluster.id, brandId, size, TimeUnit.NANOSECONDS.toMinutes(windowNanos));
+        }
+        return Optional.of(membership);
+    }
+
+    /**
+     * Analysis shared by a cluster: the leader's response and the ID of the result it was stored in.
+     */
+    public record ClusterAnalysis(AiAnalysisResponse response, Long resultId, boolean verificationRequired) {}
+
+    /**
+     * A message's place in a cluster.
+     */
+    public static final class ClusterMembership {
+
+        private final Cluster cluster;
+        private final boolean leader;
+        private final int clusterSize;
+        private final CompletableFuture<ClusterAnalysis> analysis; // of the leader in charge when this member joined
+        private volatile ClusterAnalysis reused;
+        private volatile boolean waitOver;
+
+        private ClusterMembership(Cluster cluster, boolean leader, int clusterSize, CompletableFuture<ClusterAnalysis> analysis) {
+            this.cluster = cluster;
+            this.leader = leader;
+            this.clusterSize = clusterSize;
+            this.analysis = analysis;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        public int clusterSize() {
+            return clusterSize;
+        }
+
+        /**
+         * The leader's analysis this member reused, or null if it was analyzed on its own.
+         */
+        public ClusterAnalysis reused() {
+            return reused;
+        }
+
+        public void markReused(ClusterAnalysis analysis) {
+            this.reused = analysis;
+        }
+
+        /**
+         * Whether this member would have to wait for its leader's analysis.
+         */
+        public boolean awaitsLeader() {
+            return !leader && !waitOver && !analysis.isDone();
+        }
+
+        /**
+         * Completes once the leader's analysis is available, the leader failed or the timeout passed, without
+         * holding a thread meanwhile. {@link #awaitAnalysis} returns right away afterwards.
+         */
+        public CompletableFuture<Void> whenLeaderDone(Duration timeout) {
+            return analysis.copy()
+                    .completeOnTimeout(null, timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .handle((result, e) -> {
+                        waitOver = true;
+                        return null;
+                    });
+        }
+
+        /**
+         * Waits for the leader's analysis; does not wait again once {@link #whenLeaderDone} completed.
+         *
+         * @return The shared analysis, or empty if the leader failed or did not finish in time
+         */
+        public Optional<ClusterAnalysis> awaitAnalysis(Duration timeout) {
+            try {
+                return Optional.ofNullable(waitOver
+                        ? analysis.getNow(null)
+                        : analysis.get(timeout.toMillis(), TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            } catch (Exception e) {
+                return Optional.empty();
+            }
+        }
+
+        /**
+         * Called by the leader once its result is stored; releases waiting members.
+         */
+        public void complete(AiAnalysisResponse response, Long resultId, boolean verificationRequired) {
+            if (leader) {
+                analysis.complete(new ClusterAnalysis(response, resultId, verificationRequired));
+            }
+        }
+
+        /**
+         * Called by the leader when its analysis is not reusable; members waiting for it fall back to their own
+         * analysis, and the next member to join becomes the cluster's new leader.
+         */
+        public void fail() {
+            if (leader && analysis.complete(null)) {
+                cluster.leaderFailed(analysis);
+            }
+        }
+    }
+
+    private static final class Cluster {
+        private final long id;
+        private final long fingerprint;
+        private final AtomicInteger size = new AtomicInteger();
+        private CompletableFuture<ClusterAnalysis> analysis = new CompletableFuture<>(); // guarded by this
+        private boolean leaderless; // guarded by this
+        private volatile long lastSeenNanos;
+
+        private Cluster(long id, long fingerprint) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+        }
+
+        synchronized ClusterMembership join() {
+            boolean leader = leaderless;
+            if (leader) {
+                analysis = new CompletableFuture<>();
+                leaderless = false;
+            }
+            return new ClusterMembership(this, leader, size.incrementAndGet(), analysis);
+        }
+
+        synchronized void leaderFailed(CompletableFuture<ClusterAnalysis> failed) {
+            if (analysis == failed) {
+                leaderless = true;
+            }
+        }
+    }
+
+    private final class BrandIndex {
+        private final Map<Long, List<Cluster>> index = new HashMap<>();
+        private long lastSweepNanos = System.nanoTime();
+
+        synchronized ClusterMembership assign(long fingerprint, long now) {
+            if (now - lastSweepNanos > windowNanos / 4) {
+                sweep(now);
+            }
+
+            for (int band = 0; band < bands; band++) {
+                List<Cluster> candidates = index.get(bandKey(band, fingerprint));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Cluster cluster : candidates) {
+                    if (now - cluster.lastSeenNanos <= windowNanos
+                            && SimHash.distance(cluster.fingerprint, fingerprint) <= maxDistance) {
+                        cluster.lastSeenNanos = now;
+                        return cluster.join();
+                    }
+                }
+            }
+
+            Cluster cluster = new Cluster(clusterIds.incrementAndGet(), fingerprint);
+            cluster.lastSeenNanos = now;
+            for (int band = 0; band < bands; band++) {
+                index.computeIfAbsent(bandKey(band, fingerprint), k -> new ArrayList<>(1)).add(cluster);
+            }
+            cluster.leaderless = true;
+            return cluster.join();
+        }
+
+        private void sweep(long now) {
+            Iterator<Map.Entry<Long, List<Cluster>>> it = index.entrySet().iterator();
+            while (it.hasNext()) {
+                List<Cluster> clusters = it.next().getValue();
+                clusters.removeIf(cluster -> now - cluster.lastSeenNanos > windowNanos);
+                if (clusters.isEmpty()) {
+                    it.remove();
+                }
+            }
+            lastSweepNanos = now;
+        }
+
+        /**
+         * Bits [band * 64 / bands, (band + 1) * 64 / bands) of the fingerprint, tagged with the band number.
+         */
+        private long bandKey(int band, long fingerprint) {
+            int from = band * 64 / bands;
+            int width = (band + 1) * 64 / bands - from;
+            long mask = width == 64 ? -1L : (1L << width) - 1;
+            long bandValue = (fingerprint >>> from) & mask;
+            return ((long) band << 32) | bandValue;
+        }
+    }
+}
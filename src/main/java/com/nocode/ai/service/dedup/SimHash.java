@@ -0,0 +1,78 @@
+package com.nocode.ai.service.dedup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 64-bit SimHash fingerprints of social media text.
+ * URLs, @handles and digits are dropped before hashing, so reposts that only differ by those
+ * land on fingerprints a few bits apart. Features are word unigrams and bigrams.
+ */
+public final class SimHash {
+
+    private static final Pattern URL = Pattern.compile("https?://\\S+|www\\.\\S+");
+    private static final Pattern HANDLE = Pattern.compile("@\\w+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\s]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SimHash() {
+    }
+
+    public static List<String> tokens(String content) {
+        if (content == null) {
+            return List.of();
+        }
+        String text = content.toLowerCase(Locale.ROOT);
+        text = URL.matcher(text).replaceAll(" ");
+        text = HANDLE.matcher(text).replaceAll(" ");
+        text = NON_WORD.matcher(text).replaceAll(" ").strip();
+        if (text.isEmpty()) {
+            return List.of();
+        }
+        return List.of(WHITESPACE.split(text));
+    }
+
+    public static long fingerprint(List<String> tokens) {
+        int[] weights = new int[64];
+        List<String> features = new ArrayList<>(tokens.size() * 2);
+        for (int i = 0; i < tokens.size(); i++) {
+            features.add(tokens.get(i));
+            if (i + 1 < tokens.size()) {
+                features.add(tokens.get(i) + ' ' + tokens.get(i + 1));
+            }
+        }
+        for (String feature : features) {
+            long hash = hash64(feature);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) == 1L ? 1 : -1;
+            }
+        }
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * FNV-1a followed by the SplitMix64 finalizer to spread bits evenly.
+     */
+    private static long hash64(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < feature.length(); i++) {
+            hash ^= feature.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,320 @@
+package com.nocode.ai.service.execution;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * AIMD concurrency limit in front of every LLM call.
+ * The limit grows by one per round of calls answered within latency-tolerance times the baseline
+ * (the lowest latency of the last two windows) and shrinks by backoff-ratio, at most once per round trip,
+ * when a call is slower than that, slower than max-latency-ms or fails.
+ * Baselines are kept per call class (model and prompt kind), so a large model or a packed prompt is never
+ * compared against the fastest small single-message call.
+ * Calls beyond the limit wait, up to max-queue of them for at most max-wait-ms, and are let through
+ * in the per-brand fair order of {@link BrandFairQueue}; the others are rejected with {@link LimitExceededException}.
+ * A brand whose rate budget will not refill within its wait is rejected with {@link BrandRateLimitedException}
+ * instead, which callers defer for that brand alone.
+ * With the priority lane enabled, the last app.priority.reserved-slots slots of the limit only admit priority calls.
+ * The {@link LlmCircuitBreaker} runs inside the limiter; calls it refuses free their slot without any latency feedback.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final String DEFAULT_CLASS = "default";
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long maxLatencyNanos;
+    private final int baselineWindow;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final int reservedSlots;
+    private final BrandFairQueue fairQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    // Written under lock, read without it by the gauges
+    private volatile double limit;
+    private volatile int inFlight;
+    private volatile int queued;
+
+    // Guarded by lock
+    private final Map<String, Baseline> baselines = new HashMap<>();
+    private long lastDecreaseNanos;
+
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+    private final Counter rateLimitRejections;
+
+    public AdaptiveConcurrencyLimiter(@Value("${app.ollama.limiter.enabled:true}") boolean enabled,
+                                      @Value("${app.ollama.limiter.initial-limit:4}") int initialLimit,
+                                      @Value("${app.ollama.limiter.min-limit:1}") int minLimit,
+                                      @Value("${app.ollama.limiter.max-limit:64}") int maxLimit,
+                                      @Value("${app.ollama.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${app.ollama.limiter.latency-tolerance:2.0}") double latencyTolerance,
+                                      @Value("${app.ollama.limiter.max-latency-ms:30000}") long maxLatencyMs,
+                                      @Value("${app.ollama.limiter.baseline-window:200}") int baselineWindow,
+                                      @Value("${app.ollama.limiter.max-queue:256}") int maxQueue,
+                                      @Value("${app.ollama.limiter.max-wait-ms:60000}") long maxWaitMs,
+                                      @Value("${app.priority.enabled:false}") boolean priorityEnabled,
+                                      @Value("${app.priority.reserved-slots:2}") int reservedSlots,
+                                      BrandFairQueue fairQueue,
+                                      MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.maxLatencyNanos = maxLatencyMs > 0 ? TimeUnit.MILLISECONDS.toNanos(maxLatencyMs) : Long.MAX_VALUE;
+        this.baselineWindow = Math.max(1, baselineWindow);
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.fairQueue = fairQueue;
+        this.reservedSlots = priorityEnabled ? Math.max(0, reservedSlots) : 0;
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+        this.lastDecreaseNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+
+        Gauge.builder("llm.limiter.limit", this, l -> Math.floor(l.limit))
+                .description("Current adaptive limit of concurrent LLM calls")
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.in-flight", this, l -> l.inFlight)
+                .description("LLM calls currently running")
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.queued", this, l -> l.queued)
+                .description("LLM calls waiting for the limit")
+                .register(meterRegistry);
+        this.queueFullRejections = Counter.builder("llm.limiter.rejections")
+                .tag("reason", "queue-full")
+                .description("LLM calls rejected by the concurrency limiter")
+                .register(meterRegistry);
+        this.timeoutRejections = Counter.builder("llm.limiter.rejections")
+                .tag("reason", "timeout")
+                .description("LLM calls rejected by the concurrency limiter")
+                .register(meterRegistry);
+        this.rateLimitRejections = Counter.builder("llm.limiter.rejections")
+                .tag("reason", "rate-limit")
+                .description("LLM calls rejected by the concurrency limiter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a call that is not attributed to any brand.
+     *
+     * @see #execute(UUID, Supplier)
+     */
+    public <T> T execute(Supplier<T> call) {
+        return execute(null, false, call);
+    }
+
+    /**
+     * Runs a bulk lane call for the brand.
+     *
+     * @see #execute(UUID, boolean, String, Supplier)
+     */
+    public <T> T execute(UUID brandId, Supplier<T> call) {
+        return execute(brandId, false, DEFAULT_CLASS, call);
+    }
+
+    /**
+     * Runs a bulk lane call of the given class for the brand.
+     *
+     * @see #execute(UUID, boolean, String, Supplier)
+     */
+    public <T> T execute(UUID brandId, String callClass, Supplier<T> call) {
+        return execute(brandId, false, callClass, call);
+    }
+
+    /**
+     * Runs a call of the default class.
+     *
+     * @see #execute(UUID, boolean, String, Supplier)
+     */
+    public <T> T execute(UUID brandId, boolean priority, Supplier<T> call) {
+        return execute(brandId, priority, DEFAULT_CLASS, call);
+    }
+
+    /**
+     * Runs the call once the limit and the brand's fair share allow it and feeds its latency back into the limit.
+     *
+     * @param brandId Brand the call is made for; null shares one queue with other unattributed calls
+     * @param priority Whether the call belongs to the priority lane and may use the reserved slots
+     * @param callClass Calls of similar expected latency, e.g. model and prompt kind; its latency is only
+     *        compared against the baseline of the same class
+     * @throws LimitExceededException if the queue is full or the call waited longer than max-wait-ms
+     * @throws BrandRateLimitedException if the brand is over its rate limit
+     */
+    public <T> T execute(UUID brandId, boolean priority, String callClass, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        BrandFairQueue.Ticket ticket = acquire(fairQueue.settings(brandId), priority);
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean reachedModel = true;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } catch (LlmCircuitBreaker.CallNotPermittedException e) {
+            reachedModel = false;
+            throw e;
+        } finally {
+            release(ticket, callClass, System.nanoTime() - start, success, reachedModel);
+        }
+    }
+
+    private BrandFairQueue.Ticket acquire(BrandFairQueue.Settings brand, boolean priority) {
+        int reserved = priority ? 0 : reservedSlots;
+        lock.lock();
+        try {
+            BrandFairQueue.Ticket ticket = fairQueue.enqueue(brand, priority);
+            long deadline = System.nanoTime() + maxWaitNanos;
+            boolean waiting = false;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (inFlight < Math.max(1, (int) limit - reserved) && fairQueue.isNext(ticket, now)) {
+                        fairQueue.start(ticket, now);
+                        inFlight++;
+                        // Another brand may be next in line for a slot that is still free
+                        released.signalAll();
+                        return ticket;
+                    }
+
+                    long remaining = deadline - now;
+                    long untilBudget = fairQueue.nanosUntilBudget(ticket, now);
+                    if (!waiting && queued >= maxQueue) {
+                        fairQueue.abandon(ticket, now);
+                        queueFullRejections.increment();
+                        throw new LimitExceededException("LLM call queue is full (" + queued + " waiting, limit " + (int) limit + ")");
+                    }
+                    if (untilBudget > 0 && untilBudget > remaining) {
+                        fairQueue.abandon(ticket, now);
+                        rateLimitRejections.increment();
+                        throw new BrandRateLimitedException(brand.brandId(), Duration.ofNanos(untilBudget));
+                    }
+                    if (remaining <= 0) {
+                        fairQueue.abandon(ticket, now);
+                        timeoutRejections.increment();
+                        throw new LimitExceededException("Timed out waiting for an LLM call slot (limit " + (int) limit + ")");
+                    }
+                    if (!waiting) {
+                        waiting = true;
+                        queued++;
+                    }
+                    released.awaitNanos(untilBudget > 0 ? untilBudget : remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fairQueue.abandon(ticket, System.nanoTime());
+                timeoutRejections.increment();
+                throw new LimitExceededException("Interrupted while waiting for an LLM call slot");
+            } finally {
+                if (waiting) {
+                    queued--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(BrandFairQueue.Ticket ticket, String callClass, long latencyNanos, boolean success, boolean reachedModel) {
+        lock.lock();
+        try {
+            int concurrent = inFlight;
+            inFlight--;
+            fairQueue.finish(ticket);
+            if (!reachedModel) {
+                released.signalAll();
+                return;
+            }
+
+            Baseline baseline = baselines.computeIfAbsent(callClass == null ? DEFAULT_CLASS : callClass, c -> new Baseline());
+            if (!success || latencyNanos > maxLatencyNanos || baseline.isCongested(latencyNanos, latencyTolerance)) {
+                decrease(latencyNanos);
+            } else if (concurrent * 2 >= limit) {
+                // Only grow while the limit is actually being used, not while traffic is light
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            if (success) {
+                baseline.update(latencyNanos, baselineWindow);
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(long latencyNanos) {
+        long now = System.nanoTime();
+        // Calls that started before the last decrease report the load that caused it
+        if (now - lastDecreaseNanos < latencyNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        if ((int) previous != (int) limit) {
+            log.debug("LLM concurrency limit lowered from {} to {}", (int) previous, (int) limit);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Lowest latency of the last two windows of one call class.
+     */
+    private static final class Baseline {
+        private long baselineNanos = Long.MAX_VALUE;
+        private long windowMinNanos = Long.MAX_VALUE;
+        private int windowSamples;
+
+        boolean isCongested(long latencyNanos, double tolerance) {
+            return baselineNanos != Long.MAX_VALUE && latencyNanos > baselineNanos * tolerance;
+        }
+
+        void update(long latencyNanos, int window) {
+            windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+            baselineNanos = Math.min(baselineNanos, latencyNanos);
+            if (++windowSamples >= window) {
+                // Forget minimums older than two windows so the baseline follows model or hardware changes
+                baselineNanos = windowMinNanos;
+                windowMinNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+    }
+
+    /**
+     * Thrown when an LLM call is shed because the model is already running at its concurrency limit.
+     */
+    public static class LimitExceededException extends LlmUnavailableException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+}
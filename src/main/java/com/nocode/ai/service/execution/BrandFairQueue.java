@@ -0,0 +1,270 @@
+package com.nocode.ai.service.execution;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.Brand;
+import com.nocode.ai.domain.repository.BrandRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Orders the LLM calls waiting in {@link AdaptiveConcurrencyLimiter} by start-time fair queueing across brands,
+ * so a brand in crisis gets its weighted share of the model instead of all of it.
+ * <p>
+ * Every call is tagged with its brand's virtual start time, and the waiting call with the lowest tag among
+ * the eligible ones goes next. A brand is eligible while it runs fewer than its max in-flight calls and
+ * still has budget left in both of its token buckets: app.social-media.rate-limits.requests-per-minute
+ * (holding up to burst calls) and requests-per-hour. Weight and max in-flight come from the brand
+ * (brands.scheduling_weight, brands.max_in_flight) or app.fair-share defaults.
+ * Priority lane calls go before every bulk call and do not wait for their brand's rate budget,
+ * though they still use it up.
+ * <p>
+ * Not thread-safe: everything except {@link #settings} runs under the limiter's lock.
+ */
+@Component
+@Slf4j
+public class BrandFairQueue {
+
+    /** Queue key for calls without a brand. */
+    static final UUID NO_BRAND = new UUID(0, 0);
+
+    private final BrandRepository brandRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final double defaultWeight;
+    private final int defaultMaxInFlight;
+    private final double burst;
+    private final double perMinute;
+    private final double perHour;
+    private final long settingsTtlNanos;
+
+    private final Map<UUID, Settings> settings = new ConcurrentHashMap<>();
+    private final Map<UUID, BrandState> brands = new HashMap<>();
+    private final TreeSet<Ticket> waiting = new TreeSet<>();
+    private double virtualTime;
+    private long sequence;
+
+    public BrandFairQueue(@Autowired(required = false) BrandRepository brandRepository,
+                          @Value("${app.fair-share.enabled:true}") boolean enabled,
+                          @Value("${app.fair-share.default-weight:1.0}") double defaultWeight,
+                          @Value("${app.fair-share.max-in-flight-per-brand:8}") int defaultMaxInFlight,
+                          @Value("${app.fair-share.burst:20}") int burst,
+                          @Value("${app.social-media.rate-limits.requests-per-minute:100}") int perMinute,
+                          @Value("${app.social-media.rate-limits.requests-per-hour:1000}") int perHour,
+                          @Value("${app.fair-share.settings-refresh-ms:60000}") long settingsRefreshMs,
+                          MeterRegistry meterRegistry) {
+        this.brandRepository = brandRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultWeight = defaultWeight;
+        this.defaultMaxInFlight = defaultMaxInFlight;
+        this.burst = Math.max(1, burst);
+        this.perMinute = perMinute;
+        this.perHour = perHour;
+        this.settingsTtlNanos = TimeUnit.MILLISECONDS.toNanos(settingsRefreshMs);
+    }
+
+    /**
+     * Weight and max in-flight for the brand, read from the database at most once per settings-refresh-ms.
+     * Called before taking the limiter's lock.
+     */
+    Settings settings(UUID brandId) {
+        UUID key = brandId == null ? NO_BRAND : brandId;
+        long now = System.nanoTime();
+        Settings cached = settings.get(key);
+        if (cached != null && now - cached.loadedAtNanos() < settingsTtlNanos) {
+            return cached;
+        }
+        Settings loaded = new Settings(key, defaultWeight, defaultMaxInFlight, now);
+        if (brandRepository != null && brandId != null) {
+            try {
+                Optional<Brand> brand = brandRepository.findById(brandId);
+                if (brand.isPresent()) {
+                    Brand b = brand.get();
+                    loaded = new Settings(key,
+                            b.getSchedulingWeight() != null && b.getSchedulingWeight() > 0 ? b.getSchedulingWeight() : defaultWeight,
+                            b.getMaxInFlight() != null && b.getMaxInFlight() > 0 ? b.getMaxInFlight() : defaultMaxInFlight,
+                            now);
+                }
+            } catch (RuntimeException e) {
+                log.debug("Could not load scheduling settings of brand {}, using defaults: {}", brandId, e.getMessage());
+            }
+        }
+        settings.put(key, loaded);
+        return loaded;
+    }
+
+    Ticket enqueue(Settings brandSettings, boolean priority) {
+        BrandState brand = brands.computeIfAbsent(brandSettings.brandId(), this::newState);
+        brand.settings = brandSettings;
+        double start = Math.max(virtualTime, brand.lastFinish);
+        brand.lastFinish = start + 1.0 / brandSettings.weight();
+        Ticket ticket = new Ticket(brand, priority, start, sequence++, System.nanoTime());
+        waiting.add(ticket);
+        return ticket;
+    }
+
+    /**
+     * Whether the ticket is the eligible waiting call with the lowest start tag.
+     */
+    boolean isNext(Ticket ticket, long now) {
+        if (!enabled) {
+            return waiting.first() == ticket;
+        }
+        for (Ticket candidate : waiting) {
+            if (eligible(candidate, now)) {
+                return candidate == ticket;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Nanoseconds until the ticket's brand has budget again, 0 if it is only waiting for a slot,
+     * or Long.MAX_VALUE if the budget does not refill.
+     */
+    long nanosUntilBudget(Ticket ticket, long now) {
+        if (!enabled || ticket.priority) {
+            return 0;
+        }
+        BrandState brand = ticket.brand;
+        return Math.max(brand.minute.nanosUntilToken(now), brand.hour.nanosUntilToken(now));
+    }
+
+    void start(Ticket ticket, long now) {
+        waiting.remove(ticket);
+        virtualTime = Math.max(virtualTime, ticket.startTag);
+        BrandState brand = ticket.brand;
+        brand.inFlight++;
+        brand.minute.take(now);
+        brand.hour.take(now);
+        brand.waitTime.record(now - ticket.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void abandon(Ticket ticket, long now) {
+        waiting.remove(ticket);
+        ticket.brand.waitTime.record(now - ticket.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void finish(Ticket ticket) {
+        ticket.brand.inFlight--;
+    }
+
+    private boolean eligible(Ticket ticket, long now) {
+        BrandState brand = ticket.brand;
+        if (brand.inFlight >= brand.settings.maxInFlight()) {
+            return false;
+        }
+        return ticket.priority
+                || brand.minute.nanosUntilToken(now) == 0
+                && brand.hour.nanosUntilToken(now) == 0;
+    }
+
+    private BrandState newState(UUID brandId) {
+        long now = System.nanoTime();
+        Timer waitTime = Timer.builder("llm.fair-share.wait")
+                .description("Time LLM calls waited for capacity, per brand")
+                .tag("brand", brandId.equals(NO_BRAND) ? "none" : brandId.toString())
+                .register(meterRegistry);
+        return new BrandState(TokenBucket.of(burst, perMinute / TimeUnit.MINUTES.toNanos(1), now),
+                TokenBucket.of(perHour, perHour / TimeUnit.HOURS.toNanos(1), now), waitTime);
+    }
+
+    record Settings(UUID brandId, double weight, int maxInFlight, long loadedAtNanos) {
+    }
+
+    static final class Ticket implements Comparable<Ticket> {
+        private final BrandState brand;
+        private final boolean priority;
+        private final double startTag;
+        private final long sequence;
+        private final long enqueuedAtNanos;
+
+        private Ticket(BrandState brand, boolean priority, double startTag, long sequence, long enqueuedAtNanos) {
+            this.brand = brand;
+            this.priority = priority;
+            this.startTag = startTag;
+            this.sequence = sequence;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (priority != other.priority) {
+                return priority ? -1 : 1;
+            }
+            int byTag = Double.compare(startTag, other.startTag);
+            return byTag != 0 ? byTag : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class BrandState {
+        private final TokenBucket minute;
+        private final TokenBucket hour;
+        private final Timer waitTime;
+        private Settings settings;
+        private double lastFinish;
+        private int inFlight;
+
+        private BrandState(TokenBucket minute, TokenBucket hour, Timer waitTime) {
+            this.minute = minute;
+            this.hour = hour;
+            this.waitTime = waitTime;
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long refilledAtNanos;
+
+        /**
+         * A bucket refilling at the given rate; a rate of zero or less never runs out.
+         */
+        private static TokenBucket of(double capacity, double tokensPerNano, long now) {
+            return tokensPerNano > 0
+                    ? new TokenBucket(capacity, tokensPerNano, now)
+                    : new TokenBucket(Double.POSITIVE_INFINITY, 0, now);
+        }
+
+        private TokenBucket(double capacity, double tokensPerNano, long now) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.tokens = capacity;
+            this.refilledAtNanos = now;
+        }
+
+        private long nanosUntilToken(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                return 0;
+            }
+            return tokensPerNano > 0 ? (long) Math.ceil((1 - tokens) / tokensPerNano) : Long.MAX_VALUE;
+        }
+
+        private void take(long now) {
+            refill(now);
+            tokens -= 1;
+        }
+
+        private void refill(long now) {
+            if (now > refilledAtNanos) {
+                tokens = Math.min(capacity, tokens + (now - refilledAtNanos) * tokensPerNano);
+                refilledAtNanos = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.nocode.ai.service.execution;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a brand has used up its LLM rate budget. The model itself is fine: only this brand's calls are
+ * deferred, so this is deliberately not an {@link LlmUnavailableException} and never feeds the circuit breaker.
+ */
+@Getter
+public class BrandRateLimitedException extends RuntimeException {
+
+    private final UUID brandId;
+    private final Duration retryAfter; // Until the brand's rate budget has room again
+
+    public BrandRateLimitedException(UUID brandId, Duration retryAfter) {
+        super("Brand " + brandId + " is over its LLM rate limit");
+        this.brandId = brandId;
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,98 @@
+package com.nocode.ai.service.execution;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs analyses on virtual threads while keeping tasks of the same customer in submission order.
+ * Tasks for different customers run concurrently, up to app.ingestion.max-in-flight at once.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "concurrent")
+public class CustomerOrderedExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<UUID, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final long submitTimeoutMs;
+
+    public CustomerOrderedExecutor(@Value("${app.ingestion.max-in-flight:256}") int maxInFlight,
+                                   @Value("${app.ingestion.submit-timeout-ms:5000}") long submitTimeoutMs,
+                                   MeterRegistry meterRegistry) {
+        this.maxInFlight = maxInFlight;
+        this.submitTimeoutMs = submitTimeoutMs;
+        this.permits = new Semaphore(maxInFlight);
+        Gauge.builder("analysis.executor.in-flight", this, e -> e.maxInFlight - e.permits.availablePermits())
+                .description("Analyses submitted to the virtual-thread executor and not yet finished")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules the task after every previously submitted task of the same customer.
+     * Blocks the caller while the executor is at max-in-flight, which throttles the Kafka consumer, but no longer
+     * than app.ingestion.submit-timeout-ms, so the listener thread gets back to the container well within the poll
+     * interval and can be stopped.
+     *
+     * @param customerId The unified customer ID used as ordering key
+     * @param task The work to run
+     * @return A future completed when the task finishes, exceptionally if it failed
+     * @throws SaturatedException If no slot freed up within the submit timeout; the task was not scheduled
+     */
+    public CompletableFuture<Void> submit(UUID customerId, Runnable task) throws InterruptedException {
+        if (!permits.tryAcquire(submitTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new SaturatedException(maxInFlight, submitTimeoutMs);
+        }
+
+        if (customerId == null) {
+            CompletableFuture<Void> future = CompletableFuture.runAsync(task, executor);
+            future.whenComplete((r, e) -> permits.release());
+            return future;
+        }
+
+        // A failed predecessor must not block the rest of the customer's queue
+        CompletableFuture<Void> next = tails.compute(customerId, (id, tail) -> (tail == null
+                ? CompletableFuture.<Void>completedFuture(null)
+                : tail.handle((r, e) -> (Void) null))
+                .thenRunAsync(task, executor));
+
+        next.whenComplete((r, e) -> {
+            tails.remove(customerId, next);
+            permits.release();
+        });
+        return next;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Analysis executor did not finish within 30s, {} tasks still running", maxInFlight - permits.availablePermits());
+        }
+    }
+
+    /**
+     * Thrown when the executor stayed at max-in-flight for the whole submit timeout.
+     */
+    public static class SaturatedException extends RuntimeException {
+
+        public SaturatedException(int maxInFlight, long submitTimeoutMs) {
+            super("Analysis executor stayed at " + maxInFlight + " tasks in flight for " + submitTimeoutMs + " ms");
+        }
+    }
+}
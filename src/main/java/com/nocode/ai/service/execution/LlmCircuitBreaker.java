@@ -0,0 +1,232 @@
+package com.nocode.ai.service.execution;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker on LLM error rate and latency, over the outcomes of the last window-size calls.
+ * <p>
+ * Opens when at least min-calls were seen and either the failure rate or the rate of calls slower than
+ * slow-call-ms reaches its threshold. While open, calls fail fast with {@link LlmUnavailableException}
+ * so callers can degrade. After open-ms up to half-open-calls probes are let through: all of them
+ * succeeding closes the breaker, any failure or slow probe opens it again.
+ * <p>
+ * The breaker sits inside the {@link AdaptiveConcurrencyLimiter}, so it only sees and times the model round trip.
+ * Limiter rejections say nothing about the model's health and are never recorded, wherever they come from.
+ */
+@Component
+@Slf4j
+public class LlmCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final boolean enabled;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Guarded by this
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final Counter rejections;
+    private final MeterRegistry meterRegistry;
+
+    public LlmCircuitBreaker(@Value("${app.ollama.circuit-breaker.enabled:true}") boolean enabled,
+                             @Value("${app.ollama.circuit-breaker.window-size:50}") int windowSize,
+                             @Value("${app.ollama.circuit-breaker.min-calls:20}") int minCalls,
+                             @Value("${app.ollama.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                             @Value("${app.ollama.circuit-breaker.slow-call-ms:20000}") long slowCallMs,
+                             @Value("${app.ollama.circuit-breaker.slow-call-rate-threshold:0.8}") double slowCallRateThreshold,
+                             @Value("${app.ollama.circuit-breaker.open-ms:30000}") long openMs,
+                             @Value("${app.ollama.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.window = new byte[Math.max(1, windowSize)];
+        this.minCalls = Math.clamp(minCalls, 1, window.length);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("llm.circuit.state", this, b -> b.getState().ordinal())
+                .description("LLM circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("llm.circuit.rejections")
+                .description("LLM calls refused while the circuit breaker was open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call if the breaker permits it and records its outcome.
+     *
+     * @throws CallNotPermittedException if the breaker is open or already has its half-open probes out
+     * @throws LlmUnavailableException wrapping the call's own failure
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        boolean probe = acquirePermission();
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            record(probe, System.nanoTime() - start > slowCallNanos ? SLOW : SUCCESS);
+            return result;
+        } catch (AdaptiveConcurrencyLimiter.LimitExceededException | BrandRateLimitedException e) {
+            // Shed before reaching the model: neither a failure nor a probe
+            returnProbe(probe);
+            throw e;
+        } catch (RuntimeException e) {
+            record(probe, FAILURE);
+            throw e instanceof LlmUnavailableException unavailable
+                    ? unavailable
+                    : new LlmUnavailableException("LLM call failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Whether calls currently go through without restriction. Background work only runs while closed
+     * and leaves probing to live traffic.
+     */
+    public synchronized boolean isClosed() {
+        return getState() == State.CLOSED;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openNanos) {
+                rejections.increment();
+                throw new CallNotPermittedException("LLM circuit breaker is open");
+            }
+            transition(State.HALF_OPEN);
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenCalls) {
+                rejections.increment();
+                throw new CallNotPermittedException("LLM circuit breaker is probing");
+            }
+            probesStarted++;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void returnProbe(boolean probe) {
+        if (probe && state == State.HALF_OPEN) {
+            probesStarted--;
+        }
+    }
+
+    private synchronized void record(boolean probe, byte outcome) {
+        if (probe) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            if (outcome != SUCCESS) {
+                open();
+            } else if (++probesSucceeded >= halfOpenCalls) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // Finished after the breaker opened; already accounted for
+            return;
+        }
+
+        if (recorded == window.length) {
+            forget(window[position]);
+        } else {
+            recorded++;
+        }
+        window[position] = outcome;
+        position = (position + 1) % window.length;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+
+        if (recorded >= minCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                    || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+            log.warn("Opening LLM circuit breaker: {} failed and {} slow of the last {} calls", failures, slowCalls, recorded);
+            open();
+        }
+    }
+
+    private void forget(byte outcome) {
+        if (outcome == FAILURE) {
+            failures--;
+        } else if (outcome == SLOW) {
+            slowCalls--;
+        }
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            log.info("LLM circuit breaker {} -> {}", state, to);
+            state = to;
+            meterRegistry.counter("llm.circuit.transitions", "to", to.name().toLowerCase()).increment();
+        }
+    }
+
+    /**
+     * Thrown when the breaker refuses a call without sending it to the model.
+     */
+    public static class CallNotPermittedException extends LlmUnavailableException {
+        public CallNotPermittedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.nocode.ai.service.execution;
+
+/**
+ * Thrown when an LLM call is not made or does not complete because the model is overloaded or down.
+ * Callers fall back to degraded behaviour instead of treating it as a bad answer.
+ */
+public class LlmUnavailableException extends RuntimeException {
+
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,173 @@
+package com.nocode.ai.service.execution;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.PendingMemory;
+import com.nocode.ai.domain.repository.PendingMemoryRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes conversation memories on a few dedicated threads behind a bounded queue, so a memory backlog can neither
+ * grow without limit nor take threads from the analysis.
+ * <p>
+ * When the queue is full, app.memory.executor.overflow-policy decides: block makes the caller wait for room,
+ * drop-oldest discards the memory that waited longest, and spill stores the memory in pending_memories to be
+ * replayed later. On shutdown the queue is drained for up to drain-timeout-ms; what is left then is spilled
+ * under the spill policy and dropped otherwise.
+ */
+@Component
+@Slf4j
+public class MemoryIngestionExecutor {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP_OLDEST, SPILL
+    }
+
+    private final PendingMemoryRepository pendingMemoryRepository;
+    private final OverflowPolicy policy;
+    private final long drainTimeoutMs;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+
+    private final Counter dropped;
+    private final Counter spilled;
+
+    public MemoryIngestionExecutor(PendingMemoryRepository pendingMemoryRepository,
+                                   @Value("${app.memory.executor.threads:2}") int threads,
+                                   @Value("${app.memory.executor.queue-capacity:1000}") int queueCapacity,
+                                   @Value("${app.memory.executor.overflow-policy:block}") String overflowPolicy,
+                                   @Value("${app.memory.executor.drain-timeout-ms:30000}") long drainTimeoutMs,
+                                   MeterRegistry meterRegistry) {
+        this.pendingMemoryRepository = pendingMemoryRepository;
+        this.policy = OverflowPolicy.valueOf(overflowPolicy.strip().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.drainTimeoutMs = drainTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                Thread.ofPlatform().name("memory-ingestion-", 0).daemon().factory(), this::overflow);
+
+        Gauge.builder("memory.ingestion.backlog", queue, BlockingQueue::size)
+                .description("Conversation memories waiting for a memory ingestion thread")
+                .register(meterRegistry);
+        Gauge.builder("memory.ingestion.oldest-age", this, MemoryIngestionExecutor::oldestAgeSeconds)
+                .description("Seconds the oldest waiting conversation memory has been queued")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("memory.ingestion.dropped")
+                .description("Conversation memories discarded because the queue was full or the application stopped")
+                .register(meterRegistry);
+        this.spilled = Counter.builder("memory.ingestion.spilled")
+                .description("Conversation memories stored in pending_memories because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the memory write of the analysis result, applying the overflow policy if the queue is full.
+     *
+     * @param analysisResultId Result the memory is made from, stored when the memory is spilled
+     * @param write The memory write
+     */
+    public void submit(Long analysisResultId, Runnable write) {
+        executor.execute(new PendingWrite(analysisResultId, write, System.nanoTime()));
+    }
+
+    /**
+     * Free queue slots, used to replay spilled memories without overflowing again.
+     */
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    private void overflow(Runnable rejected, ThreadPoolExecutor pool) {
+        PendingWrite write = (PendingWrite) rejected;
+        if (pool.isShutdown()) {
+            spillOrDrop(write);
+            return;
+        }
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    queue.put(write);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(write);
+                }
+            }
+            case DROP_OLDEST -> {
+                Runnable oldest = queue.poll();
+                if (oldest != null) {
+                    drop((PendingWrite) oldest);
+                }
+                pool.execute(write);
+            }
+            case SPILL -> spill(write);
+        }
+    }
+
+    private void spillOrDrop(PendingWrite write) {
+        if (policy == OverflowPolicy.SPILL) {
+            spill(write);
+        } else {
+            drop(write);
+        }
+    }
+
+    private void spill(PendingWrite write) {
+        if (write.analysisResultId() == null) {
+            drop(write);
+            return;
+        }
+        try {
+            pendingMemoryRepository.save(PendingMemory.builder()
+                    .analysisResultId(write.analysisResultId())
+                    .build());
+            spilled.increment();
+        } catch (RuntimeException e) {
+            log.warn("Could not spill the memory of analysis result {}: {}", write.analysisResultId(), e.getMessage());
+            drop(write);
+        }
+    }
+
+    private void drop(PendingWrite write) {
+        dropped.increment();
+        log.warn("Dropped the conversation memory of analysis result {}", write.analysisResultId());
+    }
+
+    private double oldestAgeSeconds() {
+        Runnable oldest = queue.peek();
+        return oldest == null ? 0 : (System.nanoTime() - ((PendingWrite) oldest).queuedAtNanos()) / 1e9;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS)) {
+            List<Runnable> left = executor.shutdownNow();
+            log.warn("Memory ingestion did not drain within {}ms, {} memories left", drainTimeoutMs, left.size());
+            left.forEach(write -> spillOrDrop((PendingWrite) write));
+        }
+    }
+
+    private record PendingWrite(Long analysisResultId, Runnable write, long queuedAtNanos) implements Runnable {
+        @Override
+        public void run() {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                log.error("Conversation memory of analysis result {} failed", analysisResultId, e);
+            }
+        }
+    }
+}
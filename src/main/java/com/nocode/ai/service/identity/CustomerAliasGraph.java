@@ -0,0 +1,134 @@
+package com.nocode.ai.service.identity;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.nocode.ai.domain.model.CustomerAlias;
+import com.nocode.ai.domain.repository.CustomerAliasRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Which customer IDs belong to the same customer after identity merges.
+ * <p>
+ * A merge is one customer_aliases row and one union-find link; nothing stored under the old customer ID,
+ * vector store memories included, is rewritten. Reads resolve the whole group instead: the canonical ID is
+ * the root of the set, and path compression keeps repeated lookups near constant time.
+ * Links made by other instances are picked up every app.identity.aliases.refresh-ms.
+ */
+@Component
+@Slf4j
+public class CustomerAliasGraph {
+
+    private final CustomerAliasRepository aliasRepository;
+    private final UnionFind<UUID> unionFind = new UnionFind<>(); // guarded by this
+    private long lastLoadedId; // guarded by this
+    private int links; // guarded by this
+
+    public CustomerAliasGraph(CustomerAliasRepository aliasRepository, MeterRegistry meterRegistry) {
+        this.aliasRepository = aliasRepository;
+        Gauge.builder("identity.aliases.links", this, CustomerAliasGraph::linkCount)
+                .description("Customer ID merges in the alias graph")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Could not load customer aliases, retrying on the next refresh: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the links stored since the last refresh, including those of other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.identity.aliases.refresh-ms:30000}", initialDelayString = "${app.identity.aliases.refresh-ms:30000}")
+    public void refresh() {
+        long after;
+        synchronized (this) {
+            after = lastLoadedId;
+        }
+        List<CustomerAlias> stored = aliasRepository.findByIdGreaterThanOrderByIdAsc(after);
+        synchronized (this) {
+            for (CustomerAlias alias : stored) {
+                if (alias.getId() > lastLoadedId) {
+                    apply(alias.getAliasId(), alias.getCanonicalId());
+                    lastLoadedId = alias.getId();
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the alias into the canonical customer once the current transaction commits.
+     */
+    public void link(UUID aliasId, UUID canonicalId) {
+        if (aliasId.equals(canonicalId)) {
+            return;
+        }
+        aliasRepository.save(CustomerAlias.builder()
+                .aliasId(aliasId)
+                .canonicalId(canonicalId)
+                .build());
+        Runnable applyLink = () -> {
+            synchronized (this) {
+                apply(aliasId, canonicalId);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyLink.run();
+                }
+            });
+        } else {
+            applyLink.run();
+        }
+        log.info("Linked customer {} to {}", aliasId, canonicalId);
+    }
+
+    public synchronized UUID canonical(UUID customerId) {
+        return unionFind.find(customerId);
+    }
+
+    /**
+     * Every customer ID of the customer, the given one included.
+     */
+    public synchronized Set<UUID> aliases(UUID customerId) {
+        return unionFind.members(customerId);
+    }
+
+    /**
+     * Vector store filter for documents of the customer under any of its IDs, with the given brand.
+     */
+    public String historyFilter(UUID customerId, UUID brandId) {
+        String ids = aliases(customerId).stream()
+                .map(id -> "'" + id + "'")
+                .sorted()
+                .collect(Collectors.joining(", "));
+        return String.format("customer_id in [%s] AND brand_id == '%s'", ids, brandId);
+    }
+
+    private void apply(UUID aliasId, UUID canonicalId) {
+        if (unionFind.link(aliasId, canonicalId)) {
+            links++;
+        }
+    }
+
+    private synchronized int linkCount() {
+        return links;
+    }
+}
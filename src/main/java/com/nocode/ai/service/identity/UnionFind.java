@@ -0,0 +1,72 @@
+package com.nocode.ai.service.identity;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Disjoint sets with path compression. {@link #link} always keeps the second element's root as the root,
+ * so replaying the same links in the same order gives the same roots.
+ * Members are tracked per root and merged smaller into larger, so listing a set never walks the forest.
+ * <p>
+ * Not thread-safe.
+ */
+class UnionFind<T> {
+
+    private final Map<T, T> parent = new HashMap<>();
+    private final Map<T, Set<T>> members = new HashMap<>();
+
+    /**
+     * Root of the element's set; an unknown element is its own root. Compresses the path walked.
+     */
+    T find(T element) {
+        T root = element;
+        T next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        T current = element;
+        while (!current.equals(root)) {
+            T up = parent.get(current);
+            parent.put(current, root);
+            current = up;
+        }
+        return root;
+    }
+
+    /**
+     * Joins the sets of both elements under the root of the second one.
+     *
+     * @return false if they already were in the same set
+     */
+    boolean link(T element, T into) {
+        T from = find(element);
+        T to = find(into);
+        if (from.equals(to)) {
+            return false;
+        }
+        parent.put(from, to);
+
+        Set<T> fromMembers = members.remove(from);
+        Set<T> toMembers = members.remove(to);
+        if (fromMembers == null) {
+            fromMembers = new HashSet<>(Set.of(from));
+        }
+        if (toMembers == null) {
+            toMembers = new HashSet<>(Set.of(to));
+        }
+        Set<T> larger = fromMembers.size() > toMembers.size() ? fromMembers : toMembers;
+        larger.addAll(larger == fromMembers ? toMembers : fromMembers);
+        members.put(to, larger);
+        return true;
+    }
+
+    /**
+     * Every element of the element's set, itself included.
+     */
+    Set<T> members(T element) {
+        Set<T> set = members.get(find(element));
+        return set == null ? Set.of(element) : Set.copyOf(set);
+    }
+}
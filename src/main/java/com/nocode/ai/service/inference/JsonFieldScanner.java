@@ -0,0 +1,112 @@
+package com.nocode.ai.service.inference;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Incremental scanner that reports top-level fields of a JSON object as soon as their value is complete,
+ * while the rest of the document is still arriving.
+ * <p>
+ * Text before the first '{' (such as a markdown fence) is ignored. Nested objects and arrays are skipped and
+ * not reported. String values are reported without their quotes; simple escapes are resolved,
+ * unicode escapes are kept as-is. Literals (numbers, booleans, null) are reported as written.
+ * Not thread-safe; feed chunks in order from a single thread.
+ */
+public class JsonFieldScanner {
+
+    private final BiConsumer<String, String> onField;
+    private final StringBuilder token = new StringBuilder();
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private boolean expectingKey;
+    private String currentKey;
+
+    public JsonFieldScanner(BiConsumer<String, String> onField) {
+        this.onField = onField;
+    }
+
+    public void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    private void accept(char c) {
+        if (inString) {
+            acceptInString(c);
+            return;
+        }
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                token.setLength(0);
+            }
+            case '{', '[' -> {
+                depth++;
+                if (depth == 1) {
+                    expectingKey = c == '{';
+                }
+            }
+            case '}', ']' -> {
+                if (depth == 1) {
+                    completeLiteral();
+                }
+                depth = Math.max(0, depth - 1);
+            }
+            case ':' -> {
+                if (depth == 1) {
+                    expectingKey = false;
+                    token.setLength(0);
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    completeLiteral();
+                    currentKey = null;
+                    expectingKey = true;
+                }
+            }
+            default -> {
+                if (depth == 1 && !expectingKey && !Character.isWhitespace(c)) {
+                    token.append(c);
+                }
+            }
+        }
+    }
+
+    private void acceptInString(char c) {
+        if (escaped) {
+            escaped = false;
+            switch (c) {
+                case 'n' -> token.append('\n');
+                case 't' -> token.append('\t');
+                case 'r' -> token.append('\r');
+                case 'u' -> token.append("\\u");
+                default -> token.append(c);
+            }
+        } else if (c == '\\') {
+            escaped = true;
+        } else if (c == '"') {
+            inString = false;
+            if (depth == 1) {
+                if (expectingKey) {
+                    currentKey = token.toString();
+                } else if (currentKey != null) {
+                    onField.accept(currentKey, token.toString());
+                    currentKey = null;
+                }
+            }
+            token.setLength(0);
+        } else {
+            token.append(c);
+        }
+    }
+
+    private void completeLiteral() {
+        if (currentKey != null && !token.isEmpty()) {
+            onField.accept(currentKey, token.toString());
+            currentKey = null;
+        }
+        token.setLength(0);
+    }
+}
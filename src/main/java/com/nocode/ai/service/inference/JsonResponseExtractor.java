@@ -0,0 +1,203 @@
+package com.nocode.ai.service.inference;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass extraction of the JSON document in a model response, repairing the usual mistakes on the way:
+ * <ul>
+ *   <li>text or markdown fences before and after the document are dropped</li>
+ *   <li>unescaped quotes inside strings are escaped (a quote only closes a string when followed by , : } ] or the end)</li>
+ *   <li>raw line breaks and tabs inside strings are escaped</li>
+ *   <li>trailing commas are removed</li>
+ *   <li>a truncated document is closed: open string, dangling key or literal and all open arrays and objects</li>
+ * </ul>
+ * The input is copied once into a buffer of the same size; nothing else is allocated per character.
+ */
+public final class JsonResponseExtractor {
+
+    private static final Pattern COMPLETE_NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    public record Extraction(String json, boolean repaired) {}
+
+    private JsonResponseExtractor() {
+    }
+
+    /**
+     * @return The extracted document, or null when the response contains no '{' or '['
+     */
+    public static Extraction extract(CharSequence raw) {
+        if (raw == null) {
+            return null;
+        }
+        int start = 0;
+        while (start < raw.length() && raw.charAt(start) != '{' && raw.charAt(start) != '[') {
+            start++;
+        }
+        if (start == raw.length()) {
+            return null;
+        }
+
+        StringBuilder out = new StringBuilder(raw.length() - start + 8);
+        Deque<Character> open = new ArrayDeque<>();
+        boolean inString = false;
+        boolean escaped = false;
+        boolean repaired = false;
+        boolean keyString = false;
+        int stringStart = -1;
+        int end = start;
+
+        for (int i = start; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            end = i + 1;
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                    out.append(c);
+                } else if (c == '\\') {
+                    escaped = true;
+                    out.append(c);
+                } else if (c == '"') {
+                    if (closesString(raw, i + 1)) {
+                        inString = false;
+                        out.append(c);
+                    } else {
+                        out.append("\\\"");
+                        repaired = true;
+                    }
+                } else if (c == '\n') {
+                    out.append("\\n");
+                    repaired = true;
+                } else if (c == '\r') {
+                    out.append("\\r");
+                    repaired = true;
+                } else if (c == '\t') {
+                    out.append("\\t");
+                    repaired = true;
+                } else {
+                    out.append(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    int previous = lastNonWhitespace(out);
+                    keyString = !open.isEmpty() && open.peek() == '}'
+                            && previous >= 0 && (out.charAt(previous) == '{' || out.charAt(previous) == ',');
+                    stringStart = out.length();
+                    inString = true;
+                    out.append(c);
+                }
+                case '{' -> {
+                    open.push('}');
+                    out.append(c);
+                }
+                case '[' -> {
+                    open.push(']');
+                    out.append(c);
+                }
+                case '}', ']' -> {
+                    if (dropTrailingComma(out)) {
+                        repaired = true;
+                    }
+                    if (open.isEmpty() || open.peek() != c) {
+                        // Mismatched closer: close what is open up to it
+                        repaired = true;
+                        while (!open.isEmpty() && open.peek() != c) {
+                            out.append(open.pop());
+                        }
+                    }
+                    if (!open.isEmpty()) {
+                        open.pop();
+                    }
+                    out.append(c);
+                }
+                default -> out.append(c);
+            }
+            if (open.isEmpty()) {
+                break;
+            }
+        }
+
+        if (!open.isEmpty()) {
+            // Truncated output
+            repaired = true;
+            if (inString) {
+                if (escaped) {
+                    out.setLength(out.length() - 1);
+                }
+                out.append('"');
+            }
+            if (keyString && out.charAt(lastNonWhitespace(out)) == '"') {
+                // Key without a value
+                out.setLength(stringStart);
+            }
+            dropPartialLiteral(out);
+            closeDanglingValue(out);
+            while (!open.isEmpty()) {
+                dropTrailingComma(out);
+                out.append(open.pop());
+            }
+        }
+
+        if (!repaired && (start > 0 || !raw.subSequence(end, raw.length()).toString().isBlank())) {
+            repaired = true;
+        }
+        return new Extraction(out.toString(), repaired);
+    }
+
+    private static boolean closesString(CharSequence raw, int from) {
+        for (int i = from; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == ',' || c == ':' || c == '}' || c == ']';
+            }
+        }
+        return true;
+    }
+
+    private static boolean dropTrailingComma(StringBuilder out) {
+        int i = lastNonWhitespace(out);
+        if (i >= 0 && out.charAt(i) == ',') {
+            out.setLength(i);
+            return true;
+        }
+        return false;
+    }
+
+    private static void dropPartialLiteral(StringBuilder out) {
+        int last = lastNonWhitespace(out);
+        int first = last;
+        while (first >= 0 && isLiteralChar(out.charAt(first))) {
+            first--;
+        }
+        if (first == last) {
+            return;
+        }
+        String literal = out.substring(first + 1, last + 1);
+        if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null") && !COMPLETE_NUMBER.matcher(literal).matches()) {
+            out.setLength(first + 1);
+        }
+    }
+
+    private static boolean isLiteralChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == '-' || c == '+';
+    }
+
+    private static void closeDanglingValue(StringBuilder out) {
+        int i = lastNonWhitespace(out);
+        if (i >= 0 && out.charAt(i) == ':') {
+            out.append("null");
+        }
+    }
+
+    private static int lastNonWhitespace(StringBuilder out) {
+        int i = out.length() - 1;
+        while (i >= 0 && Character.isWhitespace(out.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,161 @@
+package com.nocode.ai.service.inference;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+import com.nocode.ai.domain.model.Brand;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.domain.model.SocialMessage.ChannelType;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+/**
+ * Small-then-large model cascade for single-message analysis.
+ * <p>
+ * A message is analyzed by the small model and re-run on the large one only when the answer is below the
+ * confidence threshold or UNCATEGORIZED. Messages from high-impact channels go straight to the large model,
+ * since they would always be escalated. Models and threshold can be overridden per brand.
+ * <p>
+ * Metrics: analysis.cascade.requests by route (small, escalated, direct), analysis.cascade.model.latency by tier,
+ * prompt tokens kept away from the large model (analysis.cascade.tokens.saved), and large-model time saved
+ * (analysis.cascade.latency.saved, estimated from its running average latency) against small-model time wasted
+ * on escalated messages (analysis.cascade.latency.wasted).
+ */
+@Component
+public class ModelCascade {
+
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    @Getter
+    private final boolean enabled;
+    private final String defaultSmallModel;
+    private final String defaultLargeModel;
+    private final double defaultThreshold;
+    private final Set<ChannelType> highImpactChannels;
+
+    private final Counter answeredSmall;
+    private final Counter escalated;
+    private final Counter direct;
+    private final Timer smallLatency;
+    private final Timer largeLatency;
+    private final Counter latencySaved;
+    private final Counter latencyWasted;
+    private final Counter tokensSaved;
+    private double averageLargeSeconds = Double.NaN; // guarded by this
+
+    public record Route(String smallModel, String largeModel, double threshold, boolean direct) {}
+
+    public ModelCascade(@Value("${app.analysis.cascade.enabled:false}") boolean enabled,
+                        @Value("${app.analysis.cascade.small-model:llama3.2:1b}") String smallModel,
+                        @Value("${app.analysis.cascade.large-model:${spring.ai.ollama.chat.model:llama3.2:latest}}") String largeModel,
+                        @Value("${app.analysis.cascade.confidence-threshold:0.7}") double threshold,
+                        @Value("${app.analysis.cascade.high-impact-channels:RECLAME_AQUI,CONSUMIDOR_GOV}") String[] highImpactChannels,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.defaultSmallModel = smallModel;
+        this.defaultLargeModel = largeModel;
+        this.defaultThreshold = threshold;
+        this.highImpactChannels = Arrays.stream(highImpactChannels)
+                .map(channel -> ChannelType.valueOf(channel.strip().toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toUnmodifiableSet());
+
+        this.answeredSmall = requests(meterRegistry, "small");
+        this.escalated = requests(meterRegistry, "escalated");
+        this.direct = requests(meterRegistry, "direct");
+        this.smallLatency = latency(meterRegistry, "small");
+        this.largeLatency = latency(meterRegistry, "large");
+        this.latencySaved = Counter.builder("analysis.cascade.latency.saved")
+                .description("Estimated large-model time saved by answers kept from the small model")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.latencyWasted = Counter.builder("analysis.cascade.latency.wasted")
+                .description("Small-model time spent on messages that were escalated anyway")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.tokensSaved = Counter.builder("analysis.cascade.tokens.saved")
+                .description("Prompt tokens not sent to the large model")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param priority Priority lane messages go straight to the large model, like high-impact channels
+     */
+    public Route route(SocialMessage message, Brand brand, boolean priority) {
+        String small = brand != null && brand.getCascadeSmallModel() != null ? brand.getCascadeSmallModel() : defaultSmallModel;
+        String large = brand != null && brand.getCascadeLargeModel() != null ? brand.getCascadeLargeModel() : defaultLargeModel;
+        double threshold = brand != null && brand.getCascadeConfidenceThreshold() != null
+                ? brand.getCascadeConfidenceThreshold()
+                : defaultThreshold;
+        boolean highImpact = priority || highImpactChannels.contains(message.getChannelType());
+        if (highImpact) {
+            direct.increment();
+        }
+        return new Route(small, large, threshold, highImpact);
+    }
+
+    public boolean shouldEscalate(Route route, AiAnalysisResponse response) {
+        return response.confidenceScore() == null
+                || response.confidenceScore() < route.threshold()
+                || response.category() == null
+                || "UNCATEGORIZED".equalsIgnoreCase(response.category());
+    }
+
+    /**
+     * Records a small-model call and whether its answer was kept.
+     */
+    public void recordSmall(Duration latency, boolean kept, int promptTokens) {
+        smallLatency.record(latency);
+        double smallSeconds = latency.toNanos() / 1e9;
+        if (!kept) {
+            escalated.increment();
+            latencyWasted.increment(smallSeconds);
+            return;
+        }
+        answeredSmall.increment();
+        tokensSaved.increment(promptTokens);
+        double average = averageLargeSeconds();
+        if (!Double.isNaN(average) && average > smallSeconds) {
+            latencySaved.increment(average - smallSeconds);
+        }
+    }
+
+    public void recordLarge(Duration latency) {
+        largeLatency.record(latency);
+        double seconds = latency.toNanos() / 1e9;
+        synchronized (this) {
+            averageLargeSeconds = Double.isNaN(averageLargeSeconds)
+                    ? seconds
+                    : averageLargeSeconds + LATENCY_SMOOTHING * (seconds - averageLargeSeconds);
+        }
+    }
+
+    private synchronized double averageLargeSeconds() {
+        return averageLargeSeconds;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("analysis.cascade.requests")
+                .description("Cascade analyses by route")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    private static Timer latency(MeterRegistry meterRegistry, String tier) {
+        return Timer.builder("analysis.cascade.model.latency")
+                .description("Model call latency by cascade tier")
+                .tag("tier", tier)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,284 @@
+package com.nocode.ai.service.inference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.service.AnalysisContext;
+import com.nocode.ai.service.execution.AdaptiveConcurrencyLimiter;
+import com.nocode.ai.service.execution.LlmCircuitBreaker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Packs pending messages of the same brand into one prompt so the system prompt is paid once per group.
+ * <p>
+ * Callers block until their group is analyzed. A group is sent when it reaches app.analysis.packing.max-batch-size,
+ * when the next message would no longer fit in the model context (num-ctx, with room reserved for every answer),
+ * or after app.analysis.packing.max-wait-ms. Each message carries inline the first history-top-k documents of the
+ * customer history fetched during enrichment.
+ * Messages the model skipped or answered with malformed JSON come back empty and are analyzed one at a time
+ * by the caller, as are groups of a single message.
+ */
+@Component
+@ConditionalOnProperty(name = "app.analysis.packing.enabled", havingValue = "true")
+@Slf4j
+public class PackedPromptBatcher {
+
+    private final ChatClient chatClient;
+    private final ObjectMapper objectMapper;
+    private final StructuredOutputParser structuredOutput;
+    private final PromptBudget promptBudget;
+    private final AdaptiveConcurrencyLimiter llmLimiter;
+    private final LlmCircuitBreaker llmCircuitBreaker;
+    private final int maxBatchSize;
+    private final long maxWaitMs;
+    private final int outputTokensPerMessage;
+    private final int historyTopK;
+    private final int tokenBudget;
+
+    private final Map<UUID, Group> pending = new HashMap<>(); // guarded by this
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("packed-prompt-timer").daemon().factory());
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final DistributionSummary batchSizes;
+    private final Counter fallbacks;
+
+    public PackedPromptBatcher(ChatClient.Builder builder,
+                               ObjectMapper objectMapper,
+                               StructuredOutputParser structuredOutput,
+                               PromptBudget promptBudget,
+                               AdaptiveConcurrencyLimiter llmLimiter,
+                               LlmCircuitBreaker llmCircuitBreaker,
+                               @Value("${app.analysis.packing.max-batch-size:8}") int maxBatchSize,
+                               @Value("${app.analysis.packing.max-wait-ms:50}") long maxWaitMs,
+                               @Value("${app.analysis.packing.output-tokens-per-message:200}") int outputTokensPerMessage,
+                               @Value("${app.analysis.packing.history-top-k:2}") int historyTopK,
+                               @Value("${spring.ai.ollama.chat.options.num-ctx:4096}") int numCtx,
+                               MeterRegistry meterRegistry) {
+        this.chatClient = builder
+                .defaultSystem(AnalysisPrompts.PACKED)
+                .defaultAdvisors(new SimpleLoggerAdvisor())
+                .build();
+        this.objectMapper = objectMapper;
+        this.structuredOutput = structuredOutput;
+        this.promptBudget = promptBudget;
+        this.llmLimiter = llmLimiter;
+        this.llmCircuitBreaker = llmCircuitBreaker;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitMs = maxWaitMs;
+        this.outputTokensPerMessage = outputTokensPerMessage;
+        this.historyTopK = historyTopK;
+        this.tokenBudget = numCtx - promptBudget.count(AnalysisPrompts.PACKED) - promptBudget.count(header(maxBatchSize, ""));
+
+        this.batchSizes = DistributionSummary.builder("analysis.packing.batch.size")
+                .description("Messages per packed prompt")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("analysis.packing.fallbacks")
+                .description("Messages analyzed one at a time after a packed prompt left them out or malformed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Analyzes the message as part of a packed prompt with other pending messages of its brand.
+     *
+     * @return The analysis, or empty when the caller should analyze the message on its own
+     */
+    public Optional<AiAnalysisResponse> analyze(AnalysisContext context) {
+        String history = history(context);
+        Item item = new Item(context, history, promptBudget.count(Item.describe(context, history, Integer.MAX_VALUE)),
+                new CompletableFuture<>());
+        UUID brandId = context.message().getBrandId();
+
+        List<Group> ready = new ArrayList<>(2);
+        synchronized (this) {
+            Group group = pending.get(brandId);
+            if (group != null && group.tokens + item.tokens() + outputTokensPerMessage > tokenBudget) {
+                pending.remove(brandId);
+                ready.add(group);
+                group = null;
+            }
+            if (group == null) {
+                Group created = new Group(context.brandInstructions());
+                pending.put(brandId, created);
+                timer.schedule(() -> flushIfPending(brandId, created), maxWaitMs, TimeUnit.MILLISECONDS);
+                group = created;
+            }
+            group.add(item);
+            if (group.items.size() >= maxBatchSize) {
+                pending.remove(brandId);
+                ready.add(group);
+            }
+        }
+        ready.forEach(this::send);
+
+        try {
+            Optional<AiAnalysisResponse> response = item.result().join();
+            if (response.isEmpty()) {
+                fallbacks.increment();
+            }
+            return response;
+        } catch (Exception e) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        synchronized (this) {
+            pending.values().forEach(group -> group.items.forEach(item -> item.result().complete(Optional.empty())));
+            pending.clear();
+        }
+        senders.close();
+    }
+
+    private synchronized void flushIfPending(UUID brandId, Group group) {
+        if (pending.remove(brandId, group)) {
+            send(group);
+        }
+    }
+
+    private void send(Group group) {
+        if (group.items.size() == 1) {
+            group.items.getFirst().result().complete(Optional.empty());
+            return;
+        }
+        senders.execute(() -> {
+            try {
+                complete(group, callModel(group));
+            } catch (Exception e) {
+                log.warn("Packed prompt of {} messages failed, analyzing them one at a time: {}", group.items.size(), e.getMessage());
+                group.items.forEach(item -> item.result().complete(Optional.empty()));
+            }
+        });
+    }
+
+    private String callModel(Group group) {
+        batchSizes.record(group.items.size());
+
+        StringBuilder prompt = new StringBuilder(header(group.items.size(), group.brandInstructions));
+        for (int i = 0; i < group.items.size(); i++) {
+            Item item = group.items.get(i);
+            prompt.append(Item.describe(item.context(), item.history(), i));
+        }
+
+        UUID brandId = group.items.get(0).context().message().getBrandId();
+        return llmLimiter.execute(brandId, "packed", () -> llmCircuitBreaker.execute(() -> chatClient.prompt()
+                .user(prompt.toString())
+                .options(structuredOutput.packedOptions()
+                        .numPredict(group.items.size() * outputTokensPerMessage)
+                        .build())
+                .call()
+                .content()));
+    }
+
+    private void complete(Group group, String rawContent) {
+        Map<Integer, AiAnalysisResponse> byIndex = parse(rawContent, group.items.size());
+        for (int i = 0; i < group.items.size(); i++) {
+            group.items.get(i).result().complete(Optional.ofNullable(byIndex.get(i)));
+        }
+        log.info("Packed prompt analyzed {}/{} messages", byIndex.size(), group.items.size());
+    }
+
+    private Map<Integer, AiAnalysisResponse> parse(String rawContent, int size) {
+        Map<Integer, AiAnalysisResponse> byIndex = new HashMap<>();
+        if (rawContent == null) {
+            return byIndex;
+        }
+        Optional<JsonNode> array = structuredOutput.parseTree(rawContent);
+        if (array.isEmpty() || !array.get().isArray()) {
+            log.warn("Packed prompt returned no JSON array: {}", rawContent);
+            return byIndex;
+        }
+        for (JsonNode node : array.get()) {
+            if (!(node instanceof ObjectNode object) || !object.path("index").canConvertToInt()) {
+                continue;
+            }
+            int index = object.remove("index").asInt();
+            if (index < 0 || index >= size || byIndex.containsKey(index)) {
+                continue;
+            }
+            try {
+                AiAnalysisResponse response = objectMapper.treeToValue(object, AiAnalysisResponse.class);
+                if (response.sentiment() != null && response.category() != null) {
+                    byIndex.put(index, response);
+                }
+            } catch (Exception e) {
+                log.debug("Malformed analysis for packed message {}: {}", index, e.getMessage());
+            }
+        }
+        return byIndex;
+    }
+
+    private String history(AnalysisContext context) {
+        List<Document> documents = context.history();
+        if (historyTopK <= 0 || documents == null || documents.isEmpty()) {
+            return "";
+        }
+        return documents.stream()
+                .limit(historyTopK)
+                .map(Document::getText)
+                .collect(Collectors.joining("\n  - ", "  - ", ""));
+    }
+
+    private static String header(int size, String brandInstructions) {
+        return (brandInstructions == null || brandInstructions.isBlank() ? "" : brandInstructions + "\n\n")
+                + "Analyze the following " + size + " messages.\n\n";
+    }
+
+    private record Item(AnalysisContext context, String history, int tokens,
+                        CompletableFuture<Optional<AiAnalysisResponse>> result) {
+
+        static String describe(AnalysisContext context, String history, int index) {
+            SocialMessage message = context.message();
+            return "### Message " + index + " (platform: " + message.getPlatform()
+                    + ", verificationRequired: " + context.verificationRequired() + ")\n"
+                    + (history.isEmpty() ? "" : "Customer history:\n" + history + "\n")
+                    + "Content: " + message.getContent() + "\n\n";
+        }
+    }
+
+    private final class Group {
+        private final String brandInstructions;
+        private final List<Item> items = new ArrayList<>();
+        private int tokens;
+
+        Group(String brandInstructions) {
+            this.brandInstructions = brandInstructions;
+            this.tokens = promptBudget.count(brandInstructions);
+        }
+
+        void add(Item item) {
+            items.add(item);
+            tokens += item.tokens() + outputTokensPerMessage;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.nocode.ai.service.inference;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.service.identity.CustomerAliasGraph;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fits single-message analysis prompts into the model context window.
+ * <p>
+ * The system prompt is always {@link AnalysisPrompts#SINGLE_MESSAGE}, byte-identical on every call, so Ollama can
+ * reuse its KV cache for that prefix; everything that varies goes into the user message after it.
+ * Brand instructions are capped, the message is truncated only if it cannot fit on its own, and customer history
+ * documents are added in similarity order until the budget (num-ctx minus num-predict, minus a safety margin)
+ * is spent, the last one trimmed to what is left.
+ * Token counts per prompt and per section are published as analysis.prompt.tokens and analysis.prompt.section.tokens.
+ */
+@Component
+@Slf4j
+public class PromptBudget {
+
+    private static final String HISTORY_HEADER = "CUSTOMER HISTORY:\n";
+    private static final String DOCUMENT_PREFIX = "- ";
+
+    private final TokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+    private final VectorStore vectorStore;
+    private final CustomerAliasGraph aliasGraph;
+    private final int maxPromptTokens;
+    private final int historyCandidates;
+    private final double similarityThreshold;
+    private final int brandInstructionsMaxTokens;
+    private final int minDocumentTokens;
+    private final int systemTokens;
+
+    private final DistributionSummary promptTokens;
+    private final Map<String, DistributionSummary> sectionTokens;
+
+    public record PromptPlan(String user, int tokens, int historyDocuments, int droppedDocuments) {}
+
+    public PromptBudget(VectorStore vectorStore,
+                        CustomerAliasGraph aliasGraph,
+                        @Value("${spring.ai.ollama.chat.options.num-ctx:4096}") int numCtx,
+                        @Value("${spring.ai.ollama.chat.options.num-predict:1024}") int numPredict,
+                        @Value("${app.analysis.prompt-budget.safety-margin:0.05}") double safetyMargin,
+                        @Value("${app.analysis.prompt-budget.history-candidates:8}") int historyCandidates,
+                        @Value("${app.analysis.prompt-budget.similarity-threshold:0.0}") double similarityThreshold,
+                        @Value("${app.analysis.prompt-budget.brand-instructions-max-tokens:512}") int brandInstructionsMaxTokens,
+                        @Value("${app.analysis.prompt-budget.min-document-tokens:32}") int minDocumentTokens,
+                        MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.aliasGraph = aliasGraph;
+        this.maxPromptTokens = (int) ((numCtx - numPredict) * (1.0 - safetyMargin));
+        this.historyCandidates = historyCandidates;
+        this.similarityThreshold = similarityThreshold;
+        this.brandInstructionsMaxTokens = brandInstructionsMaxTokens;
+        this.minDocumentTokens = minDocumentTokens;
+        this.systemTokens = count(AnalysisPrompts.SINGLE_MESSAGE);
+
+        this.promptTokens = DistributionSummary.builder("analysis.prompt.tokens")
+                .description("Estimated tokens per analysis prompt")
+                .baseUnit("tokens")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sectionTokens = Map.of(
+                "system", section(meterRegistry, "system"),
+                "brand", section(meterRegistry, "brand"),
+                "trust", section(meterRegistry, "trust"),
+                "history", section(meterRegistry, "history"),
+                "message", section(meterRegistry, "message"));
+
+        if (systemTokens >= maxPromptTokens) {
+            log.warn("System prompt ({} tokens) leaves no room in a {} token prompt budget", systemTokens, maxPromptTokens);
+        }
+    }
+
+    /**
+     * Builds the user message for one message, with as much ranked customer history as fits.
+     */
+    public PromptPlan plan(SocialMessage message, String brandInstructions, boolean verificationRequired) {
+        return plan(message, brandInstructions, verificationRequired, historyCandidates);
+    }
+
+    /**
+     * Same as {@link #plan(SocialMessage, String, boolean)} with at most maxHistoryDocuments customer history documents.
+     */
+    public PromptPlan plan(SocialMessage message, String brandInstructions, boolean verificationRequired, int maxHistoryDocuments) {
+        return plan(message, brandInstructions, verificationRequired, history(message, maxHistoryDocuments));
+    }
+
+    /**
+     * Same as {@link #plan(SocialMessage, String, boolean)} with customer history already fetched by {@link #history}.
+     */
+    public PromptPlan plan(SocialMessage message, String brandInstructions, boolean verificationRequired, List<Document> customerHistory) {
+        String brand = truncate(brandInstructions == null ? "" : brandInstructions.strip(), brandInstructionsMaxTokens);
+        String brandSection = brand.isEmpty() ? "" : "BRAND INSTRUCTIONS:\n" + brand + "\n\n";
+        String trustSection = "TRUST CONTEXT: verificationRequired=" + verificationRequired + ". "
+                + "If true, you MUST include \"Request account linkage for history access\" in the 'suggestedActions' list in your JSON response.\n\n";
+        String content = message.getContent() == null ? "" : message.getContent();
+
+        int brandTokens = count(brandSection);
+        int trustTokens = count(trustSection);
+        int fixedTokens = systemTokens + brandTokens + trustTokens + count(HISTORY_HEADER);
+        int messageTokens = count(content);
+        if (fixedTokens + messageTokens > maxPromptTokens) {
+            log.warn("Message {} ({} tokens) does not fit the prompt budget, truncating it", message.getId(), messageTokens);
+            content = truncate(content, Math.max(0, maxPromptTokens - fixedTokens));
+            messageTokens = count(content);
+        }
+
+        int remaining = maxPromptTokens - fixedTokens - messageTokens;
+        StringBuilder history = new StringBuilder();
+        int used = 0;
+        int dropped = 0;
+        for (Document document : customerHistory) {
+            String text = document.getText() == null ? "" : document.getText().strip();
+            int tokens = count(DOCUMENT_PREFIX + text + "\n");
+            if (tokens <= remaining) {
+                history.append(DOCUMENT_PREFIX).append(text).append('\n');
+                remaining -= tokens;
+                used++;
+            } else if (remaining >= minDocumentTokens) {
+                history.append(DOCUMENT_PREFIX).append(truncate(text, remaining - count(DOCUMENT_PREFIX) - 1)).append('\n');
+                remaining = 0;
+                used++;
+            } else {
+                dropped++;
+            }
+        }
+
+        String historySection = used == 0 ? "" : HISTORY_HEADER + history + "\n";
+        String user = brandSection + trustSection + historySection + content;
+        int historyTokens = count(historySection);
+        int total = systemTokens + brandTokens + trustTokens + historyTokens + messageTokens;
+
+        promptTokens.record(total);
+        sectionTokens.get("system").record(systemTokens);
+        sectionTokens.get("brand").record(brandTokens);
+        sectionTokens.get("trust").record(trustTokens);
+        sectionTokens.get("history").record(historyTokens);
+        sectionTokens.get("message").record(messageTokens);
+        if (dropped > 0) {
+            log.debug("Dropped {} customer history documents for message {} to stay within {} tokens", dropped, message.getId(), maxPromptTokens);
+        }
+        return new PromptPlan(user, total, used, dropped);
+    }
+
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : estimator.estimate(text);
+    }
+
+    /**
+     * Longest prefix of the text within the token limit.
+     */
+    public String truncate(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            return "";
+        }
+        if (count(text) <= maxTokens) {
+            return text;
+        }
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (count(text.substring(0, middle)) <= maxTokens) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return text.substring(0, low);
+    }
+
+    /**
+     * History of the message's customer with its brand, most similar first, at most topK (capped at history-candidates)
+     * documents. Empty if the customer is unknown or the vector store is unavailable.
+     */
+    public List<Document> history(SocialMessage message, int topK) {
+        int limit = Math.min(topK, historyCandidates);
+        if (message.getCustomerId() == null || limit <= 0) {
+            return List.of();
+        }
+        try {
+            // Filtered RAG: history of THIS customer, under any of its merged IDs, with THIS brand, most similar first
+            List<Document> documents = vectorStore.similaritySearch(SearchRequest.builder()
+                    .query(message.getContent())
+                    .topK(limit)
+                    .similarityThreshold(similarityThreshold)
+                    .filterExpression(aliasGraph.historyFilter(message.getCustomerId(), message.getBrandId()))
+                    .build());
+            return documents == null ? List.of() : documents;
+        } catch (RuntimeException e) {
+            log.warn("Customer history unavailable for message {}, analyzing without it: {}", message.getId(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static DistributionSummary section(MeterRegistry meterRegistry, String section) {
+        return DistributionSummary.builder("analysis.prompt.section.tokens")
+                .description("Estimated tokens per analysis prompt section")
+                .baseUnit("tokens")
+                .tag("section", section)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,124 @@
+package com.nocode.ai.service.inference;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+import com.nocode.ai.service.inference.JsonResponseExtractor.Extraction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Structured output for analysis prompts: the JSON schema sent to Ollama's format mode and
+ * the tolerant parsing of what comes back.
+ * <p>
+ * Parse outcomes are counted in analysis.response.parse by outcome (clean, repaired, failed).
+ */
+@Component
+@Slf4j
+public class StructuredOutputParser {
+
+    private final ObjectMapper objectMapper;
+    private final boolean schemaEnabled;
+    private final Map<String, Object> responseSchema;
+    private final Map<String, Object> packedSchema;
+
+    private final Counter clean;
+    private final Counter repaired;
+    private final Counter failed;
+
+    public StructuredOutputParser(ObjectMapper objectMapper,
+                                  @Value("${app.analysis.structured-output.enabled:true}") boolean schemaEnabled,
+                                  MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.schemaEnabled = schemaEnabled;
+        this.responseSchema = new BeanOutputConverter<>(AiAnalysisResponse.class).getJsonSchemaMap();
+        this.packedSchema = packedSchema(responseSchema);
+
+        this.clean = outcomes(meterRegistry, "clean");
+        this.repaired = outcomes(meterRegistry, "repaired");
+        this.failed = outcomes(meterRegistry, "failed");
+    }
+
+    /**
+     * Options constraining a single-message answer to the {@link AiAnalysisResponse} schema.
+     */
+    public OllamaOptions.Builder responseOptions() {
+        return schemaEnabled ? OllamaOptions.builder().format(responseSchema) : OllamaOptions.builder();
+    }
+
+    /**
+     * Options constraining a packed answer to an array of indexed {@link AiAnalysisResponse} objects.
+     */
+    public OllamaOptions.Builder packedOptions() {
+        return schemaEnabled ? OllamaOptions.builder().format(packedSchema) : OllamaOptions.builder();
+    }
+
+    public Optional<AiAnalysisResponse> parseResponse(String rawContent) {
+        return parseTree(rawContent).flatMap(node -> {
+            try {
+                return Optional.of(objectMapper.treeToValue(node, AiAnalysisResponse.class));
+            } catch (Exception e) {
+                log.warn("AI response does not match AiAnalysisResponse: {}", e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+
+    public Optional<JsonNode> parseTree(String rawContent) {
+        Extraction extraction = JsonResponseExtractor.extract(rawContent);
+        if (extraction == null) {
+            failed.increment();
+            return Optional.empty();
+        }
+        try {
+            JsonNode node = objectMapper.readTree(extraction.json());
+            (extraction.repaired() ? repaired : clean).increment();
+            return Optional.of(node);
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("AI response is not valid JSON even after repair: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Map<String, Object> packedSchema(Map<String, Object> schema) {
+        Map<String, Object> item = objectMapper.convertValue(schema, new TypeReference<LinkedHashMap<String, Object>>() {});
+        item.remove("$schema");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("index", Map.of("type", "integer"));
+        if (item.get("properties") instanceof Map<?, ?> existing) {
+            existing.forEach((name, property) -> properties.put(String.valueOf(name), property));
+        }
+        item.put("properties", properties);
+
+        List<Object> required = new ArrayList<>(List.of("index"));
+        if (item.get("required") instanceof List<?> existing) {
+            required.addAll(existing);
+        }
+        item.put("required", required);
+
+        return Map.of("type", "array", "items", item);
+    }
+
+    private static Counter outcomes(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("analysis.response.parse")
+                .description("Model responses by parse outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
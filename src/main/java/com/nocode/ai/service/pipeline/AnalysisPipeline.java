@@ -0,0 +1,105 @@
+package com.nocode.ai.service.pipeline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.service.BrandAnalyzerService;
+import com.nocode.ai.service.dedup.NearDuplicateDetector.ClusterMembership;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Staged execution of {@link BrandAnalyzerService#analyzeMessage} (app.ingestion.mode=pipeline).
+ * <p>
+ * identity -> enrichment -> inference -> persistence -> publication, each stage with its own
+ * worker count and bounded queue (app.analysis.pipeline.stages.&lt;stage&gt;.concurrency / queue-capacity).
+ * Queue depth, queue wait and service time are published per stage to spot the bottleneck.
+ * Near-duplicate followers whose leader is still being analyzed are parked instead of holding an inference
+ * worker, and re-enter the inference stage once the leader is done or app.dedup.follower-timeout-ms passed.
+ * Jobs still queued on shutdown are dropped without completing, so their records are not acknowledged; the
+ * redelivered records find the message stored under their source record and skip the stages already done.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.ingestion.mode", havingValue = "pipeline")
+public class AnalysisPipeline {
+
+    private static final String PROPERTY_PREFIX = "app.analysis.pipeline.stages.";
+
+    private final PipelineStage identityStage;
+    private final List<PipelineStage> stages;
+
+    public AnalysisPipeline(BrandAnalyzerService analyzerService, Environment environment, MeterRegistry meterRegistry) {
+        PipelineStage publication = stage("publication", 2, 64, environment, meterRegistry, null, job -> {
+            analyzerService.publish(job.getMessage(), job.getResult());
+            analyzerService.recordLaneLatency(job.getContext());
+            job.getCompletion().complete(job.getResult());
+        });
+        PipelineStage persistence = stage("persistence", 2, 64, environment, meterRegistry, publication,
+                job -> job.setResult(analyzerService.persistResult(job.getContext(), job.getOutcome())));
+        Duration followerTimeout = Duration.ofMillis(environment.getProperty("app.dedup.follower-timeout-ms", Long.class, 60000L));
+        PipelineStage inference = stage("inference", 8, 32, environment, meterRegistry, persistence, job -> {
+            ClusterMembership cluster = job.getContext().nearDuplicate();
+            if (cluster != null && cluster.awaitsLeader()) {
+                job.setParkedUntil(cluster.whenLeaderDone(followerTimeout));
+                return;
+            }
+            job.setOutcome(analyzerService.infer(job.getContext()));
+        });
+        PipelineStage enrichment = stage("enrichment", 4, 64, environment, meterRegistry, inference,
+                job -> job.setContext(analyzerService.enrich(job.getMessage())));
+        this.identityStage = stage("identity", 2, 64, environment, meterRegistry, enrichment,
+                job -> {
+                    SocialMessage message = analyzerService.ingestMessage(job.getBrandId(), job.getContent(), job.getPlatform(),
+                            job.getUser(), job.getSourceRecord());
+                    job.setMessage(message);
+                    if (message.getAnalysisResult() != null) {
+                        // Redelivered after it was analyzed
+                        job.getCompletion().complete(message.getAnalysisResult());
+                    }
+                });
+        this.stages = List.of(identityStage, enrichment, inference, persistence, publication);
+    }
+
+    @PostConstruct
+    public void start() {
+        stages.forEach(PipelineStage::start);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stages.forEach(PipelineStage::stop);
+    }
+
+    /**
+     * Enters a new message into the pipeline, blocking while the identity stage queue is full.
+     *
+     * @param sourceRecord The Kafka record the message was read from, see {@link SocialMessage#sourceRecord(String, int, long)}; may be null
+     * @return A future completed with the saved result once the publication stage is done
+     */
+    public CompletableFuture<AnalysisResult> submit(UUID brandId, String content, String platform, String user,
+                                                    String sourceRecord) throws InterruptedException {
+        PipelineJob job = new PipelineJob(brandId, content, platform, user, sourceRecord);
+        identityStage.submit(job);
+        return job.getCompletion();
+    }
+
+    private static PipelineStage stage(String name, int defaultConcurrency, int defaultCapacity, Environment environment,
+                                       MeterRegistry meterRegistry, PipelineStage next, Consumer<PipelineJob> handler) {
+        int concurrency = environment.getProperty(PROPERTY_PREFIX + name + ".concurrency", Integer.class, defaultConcurrency);
+        int capacity = environment.getProperty(PROPERTY_PREFIX + name + ".queue-capacity", Integer.class, defaultCapacity);
+        return new PipelineStage(name, concurrency, capacity, handler, next, meterRegistry);
+    }
+}
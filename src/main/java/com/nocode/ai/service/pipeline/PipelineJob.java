@@ -0,0 +1,40 @@
+package com.nocode.ai.service.pipeline;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.service.AnalysisContext;
+import com.nocode.ai.service.InferenceOutcome;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A message travelling through the analysis pipeline. Each stage fills in its own output.
+ */
+@Getter
+@Setter
+@RequiredArgsConstructor
+class PipelineJob {
+
+    private final UUID brandId;
+    private final String content;
+    private final String platform;
+    private final String user;
+    private final String sourceRecord;
+    private final CompletableFuture<AnalysisResult> completion = new CompletableFuture<>();
+
+    private SocialMessage message;
+    private AnalysisContext context;
+    private InferenceOutcome outcome;
+    private AnalysisResult result;
+    private long enqueuedAtNanos;
+    private CompletableFuture<?> parkedUntil; // Set by a handler to leave the stage and come back to it once completed
+
+    boolean isDone() {
+        return completion.isDone();
+    }
+}
@@ -0,0 +1,135 @@
+package com.nocode.ai.service.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One stage of the analysis pipeline: a bounded input queue drained by a fixed number of workers.
+ * Workers hand finished jobs to the next stage with a blocking put, so a full downstream queue
+ * stalls this stage's workers, its queue fills up, and the pressure propagates upstream.
+ * A handler can park a job instead of processing it; the job then frees its worker and is put back
+ * into this stage's queue once the future it was parked on completes.
+ */
+@Slf4j
+class PipelineStage {
+
+    @Getter
+    private final String name;
+    private final int concurrency;
+    private final BlockingQueue<PipelineJob> queue;
+    private final Consumer<PipelineJob> handler;
+    private final PipelineStage next;
+    private final Timer serviceTime;
+    private final Timer queueWait;
+    private final List<Thread> workers = new ArrayList<>();
+    // Parked jobs are re-queued from virtual threads, since the put may block
+    private final ExecutorService requeuer = Executors.newVirtualThreadPerTaskExecutor();
+
+    PipelineStage(String name, int concurrency, int queueCapacity, Consumer<PipelineJob> handler,
+                  PipelineStage next, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.handler = handler;
+        this.next = next;
+        this.serviceTime = Timer.builder("analysis.pipeline.service.time")
+                .description("Time a pipeline stage spends processing one message")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("analysis.pipeline.queue.wait")
+                .description("Time a message waits in a pipeline stage queue")
+                .tag("stage", name)
+                .register(meterRegistry);
+        Gauge.builder("analysis.pipeline.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting in a pipeline stage queue")
+                .tag("stage", name)
+                .register(meterRegistry);
+    }
+
+    void start() {
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(Thread.ofPlatform()
+                    .name("pipeline-" + name + "-" + i)
+                    .daemon(true)
+                    .start(this::runWorker));
+        }
+        log.info("Started pipeline stage '{}' with {} workers and queue capacity {}", name, concurrency, queue.remainingCapacity());
+    }
+
+    /**
+     * Enqueues a job, blocking while the stage queue is full.
+     */
+    void submit(PipelineJob job) throws InterruptedException {
+        job.setEnqueuedAtNanos(System.nanoTime());
+        queue.put(job);
+    }
+
+    void stop() {
+        workers.forEach(Thread::interrupt);
+        requeuer.shutdownNow();
+        if (!queue.isEmpty()) {
+            log.warn("Pipeline stage '{}' stopped with {} queued messages, left unacknowledged for redelivery", name, queue.size());
+        }
+    }
+
+    private void requeue(PipelineJob job) {
+        try {
+            submit(job);
+        } catch (InterruptedException e) {
+            job.getCompletion().completeExceptionally(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            PipelineJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queueWait.record(System.nanoTime() - job.getEnqueuedAtNanos(), TimeUnit.NANOSECONDS);
+
+            try {
+                serviceTime.record(() -> handler.accept(job));
+            } catch (Exception e) {
+                log.error("Pipeline stage '{}' failed for message from {}", name, job.getUser(), e);
+                job.getCompletion().completeExceptionally(e);
+                continue;
+            }
+
+            CompletableFuture<?> parkedUntil = job.getParkedUntil();
+            if (parkedUntil != null) {
+                job.setParkedUntil(null);
+                parkedUntil.whenCompleteAsync((r, e) -> requeue(job), requeuer);
+                continue;
+            }
+            if (next == null || job.isDone()) {
+                continue;
+            }
+            try {
+                next.submit(job);
+            } catch (InterruptedException e) {
+                job.getCompletion().completeExceptionally(e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.nocode.ai.service.routing;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Least-outstanding-requests routing over several Ollama hosts.
+ * <p>
+ * An endpoint is ejected for a while after app.ollama.routing.eject-after-failures consecutive failed calls,
+ * and taken out of rotation while its /api/tags health check fails. If no endpoint is available the least
+ * loaded one is used anyway, so a pool-wide outage surfaces as call errors rather than as no routing at all.
+ * Health checks probe all endpoints at once on their own threads, so a round takes one health timeout however
+ * many hosts are down.
+ */
+@Slf4j
+public class EndpointPool implements AutoCloseable {
+
+    private final List<OllamaEndpoint> endpoints;
+    private final int ejectAfterFailures;
+    private final Duration ejection;
+    private final Duration healthTimeout;
+    private final ExecutorService probeExecutor;
+    private final HttpClient httpClient;
+    private final AtomicInteger rotation = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    public EndpointPool(List<OllamaEndpoint> endpoints, int ejectAfterFailures, Duration ejection, Duration healthTimeout,
+                        Duration healthConnectTimeout, MeterRegistry meterRegistry) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one Ollama endpoint is required");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejection = ejection;
+        this.healthTimeout = healthTimeout;
+        this.probeExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ollama-health-", 0).factory());
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(healthConnectTimeout)
+                .executor(probeExecutor)
+                .build();
+        this.meterRegistry = meterRegistry;
+
+        for (OllamaEndpoint endpoint : this.endpoints) {
+            Gauge.builder("ollama.endpoint.outstanding", endpoint, e -> e.getOutstanding().get())
+                    .description("Requests in flight per Ollama endpoint")
+                    .tag("endpoint", endpoint.getBaseUrl())
+                    .register(meterRegistry);
+            Gauge.builder("ollama.endpoint.available", endpoint, e -> e.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .description("Whether the Ollama endpoint is in rotation")
+                    .tag("endpoint", endpoint.getBaseUrl())
+                    .register(meterRegistry);
+        }
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    public List<OllamaEndpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Picks the endpoint with the fewest requests in flight and counts the new request against it.
+     *
+     * @param excluded Endpoints already tried for this request
+     * @return The endpoint, or null when every endpoint is excluded
+     */
+    public synchronized OllamaEndpoint acquire(Set<OllamaEndpoint> excluded) {
+        long now = System.nanoTime();
+        OllamaEndpoint best = pick(excluded, now, true);
+        if (best == null) {
+            best = pick(excluded, now, false);
+            if (best != null) {
+                log.warn("No Ollama endpoint available, routing to {} anyway", best);
+            }
+        }
+        if (best != null) {
+            best.getOutstanding().incrementAndGet();
+        }
+        return best;
+    }
+
+    public void release(OllamaEndpoint endpoint, boolean success) {
+        endpoint.getOutstanding().decrementAndGet();
+        if (success) {
+            endpoint.getConsecutiveFailures().set(0);
+        } else if (endpoint.getConsecutiveFailures().incrementAndGet() >= ejectAfterFailures) {
+            eject(endpoint);
+        }
+    }
+
+    /**
+     * Releases a request that was abandoned (hedge loser), without counting it as a failure.
+     */
+    public void releaseCancelled(OllamaEndpoint endpoint) {
+        endpoint.getOutstanding().decrementAndGet();
+    }
+
+    /**
+     * Runs the call on the least loaded endpoint, failing over to the others in turn.
+     */
+    public <T> T withFailover(Function<OllamaEndpoint, T> call) {
+        Set<OllamaEndpoint> tried = new HashSet<>();
+        RuntimeException failure = null;
+        OllamaEndpoint endpoint;
+        while ((endpoint = acquire(tried)) != null) {
+            tried.add(endpoint);
+            try {
+                T result = call.apply(endpoint);
+                release(endpoint, true);
+                return result;
+            } catch (RuntimeException e) {
+                release(endpoint, false);
+                log.warn("Ollama call on {} failed: {}", endpoint, e.getMessage());
+                failure = e;
+            }
+        }
+        throw failure != null ? failure : new IllegalStateException("No Ollama endpoint configured");
+    }
+
+    @Scheduled(fixedDelayString = "${app.ollama.routing.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        Map<OllamaEndpoint, CompletableFuture<Boolean>> probes = new LinkedHashMap<>();
+        for (OllamaEndpoint endpoint : endpoints) {
+            probes.put(endpoint, probe(endpoint));
+        }
+        try {
+            CompletableFuture.allOf(probes.values().toArray(CompletableFuture[]::new))
+                    .get(healthTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            probes.values().forEach(probe -> probe.cancel(true));
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            // Probes do not fail; one still running after the health timeout counts as unhealthy below
+        }
+
+        probes.forEach((endpoint, probe) -> {
+            boolean healthy = probe.getNow(false);
+            probe.cancel(true);
+            if (healthy != endpoint.isHealthy()) {
+                log.info("Ollama endpoint {} is now {}", endpoint, healthy ? "healthy" : "unhealthy");
+            }
+            endpoint.setHealthy(healthy);
+            if (healthy) {
+                endpoint.getConsecutiveFailures().set(0);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        httpClient.shutdownNow();
+        probeExecutor.shutdownNow();
+    }
+
+    private CompletableFuture<Boolean> probe(OllamaEndpoint endpoint) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint.getBaseUrl() + "/api/tags"))
+                    .timeout(healthTimeout)
+                    .GET()
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.statusCode() == 200)
+                    .exceptionally(e -> false);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private void eject(OllamaEndpoint endpoint) {
+        endpoint.ejectUntil(System.nanoTime() + ejection.toNanos());
+        endpoint.getConsecutiveFailures().set(0);
+        Counter.builder("ollama.endpoint.ejections")
+                .description("Times an Ollama endpoint was ejected after consecutive failures")
+                .tag("endpoint", endpoint.getBaseUrl())
+                .register(meterRegistry)
+                .increment();
+        log.warn("Ejecting Ollama endpoint {} for {}s after {} consecutive failures", endpoint, ejection.toSeconds(), ejectAfterFailures);
+    }
+
+    private OllamaEndpoint pick(Set<OllamaEndpoint> excluded, long now, boolean availableOnly) {
+        // Rotate the starting point so ties are spread across endpoints
+        int offset = Math.floorMod(rotation.getAndIncrement(), endpoints.size());
+        OllamaEndpoint best = null;
+        for (int i = 0; i < endpoints.size(); i++) {
+            OllamaEndpoint candidate = endpoints.get((offset + i) % endpoints.size());
+            if (excluded.contains(candidate) || (availableOnly && !candidate.isAvailable(now))) {
+                continue;
+            }
+            if (best == null || candidate.getOutstanding().get() < best.getOutstanding().get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,39 @@
+package com.nocode.ai.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the most recent call latencies, for percentile-based hedge delays.
+ */
+class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @return The latency at the given quantile (0..1), or -1 when no call was recorded yet
+     */
+    synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, (int) Math.ceil(quantile * count) - 1)];
+    }
+}
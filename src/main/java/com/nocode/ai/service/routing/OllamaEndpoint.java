@@ -0,0 +1,57 @@
+package com.nocode.ai.service.routing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import lombok.Getter;
+
+/**
+ * One Ollama host in the {@link EndpointPool}, with its own chat and embedding clients and routing state.
+ */
+@Getter
+public class OllamaEndpoint {
+
+    private final String baseUrl;
+    private final ChatModel chatModel;
+    private final EmbeddingModel embeddingModel;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean healthy = true;
+    private volatile long ejectedUntilNanos = System.nanoTime();
+
+    OllamaEndpoint(String baseUrl, ChatModel chatModel, EmbeddingModel embeddingModel) {
+        this.baseUrl = baseUrl;
+        this.chatModel = chatModel;
+        this.embeddingModel = embeddingModel;
+    }
+
+    public static OllamaEndpoint create(String baseUrl, OllamaOptions chatOptions, OllamaOptions embeddingOptions) {
+        OllamaApi api = new OllamaApi(baseUrl);
+        return new OllamaEndpoint(baseUrl,
+                OllamaChatModel.builder().ollamaApi(api).defaultOptions(chatOptions).build(),
+                OllamaEmbeddingModel.builder().ollamaApi(api).defaultOptions(embeddingOptions).build());
+    }
+
+    boolean isAvailable(long nowNanos) {
+        return healthy && nowNanos - ejectedUntilNanos >= 0;
+    }
+
+    void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    void ejectUntil(long nanos) {
+        this.ejectedUntilNanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+}
@@ -0,0 +1,252 @@
+package com.nocode.ai.service.routing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+/**
+ * {@link ChatModel} that spreads calls over an {@link EndpointPool}.
+ * <p>
+ * With hedging enabled, a blocking call that has not answered after the hedge delay (the p95 of recent calls,
+ * never below app.ollama.routing.hedge.min-delay-ms) is duplicated on a second endpoint; the first successful
+ * answer wins and the other call is cancelled. A failed call fails over to the next endpoint.
+ * Streaming calls are routed but never hedged; a stream that fails before its first response fails over to the
+ * next endpoint, one that fails after it surfaces the error, since the partial answer was already emitted.
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    private static final int MIN_SAMPLES_FOR_P95 = 20;
+
+    private final EndpointPool pool;
+    private final boolean hedging;
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+    private final LatencyWindow latencies = new LatencyWindow(512);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter hedged;
+    private final Counter hedgeWins;
+
+    public RoutingChatModel(EndpointPool pool, boolean hedging, Duration initialHedgeDelay, Duration minHedgeDelay,
+                            MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.hedging = hedging;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+
+        this.hedged = Counter.builder("ollama.hedge.requests")
+                .description("Chat calls duplicated on a second endpoint after the hedge delay")
+                .register(meterRegistry);
+        this.hedgeWins = Counter.builder("ollama.hedge.wins")
+                .description("Hedged chat calls answered first by the duplicate")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (!hedging || pool.size() < 2) {
+            return pool.withFailover(endpoint -> {
+                long start = System.nanoTime();
+                ChatResponse response = endpoint.getChatModel().call(prompt);
+                latencies.record(System.nanoTime() - start);
+                return response;
+            });
+        }
+        return callHedged(prompt);
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return streamOn(prompt, new HashSet<>(), null);
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return pool.endpoints().getFirst().getChatModel().getDefaultOptions();
+    }
+
+    Duration hedgeDelay() {
+        if (latencies.count() < MIN_SAMPLES_FOR_P95) {
+            return initialHedgeDelay;
+        }
+        Duration p95 = Duration.ofNanos(latencies.percentile(0.95));
+        return p95.compareTo(minHedgeDelay) > 0 ? p95 : minHedgeDelay;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ChatResponse callHedged(Prompt prompt) {
+        CompletionService<ChatResponse> completions = new ExecutorCompletionService<>(executor);
+        List<Attempt> attempts = new ArrayList<>(2);
+        Set<OllamaEndpoint> used = new HashSet<>();
+        try {
+            if (!start(prompt, completions, attempts, used)) {
+                throw new IllegalStateException("No Ollama endpoint configured");
+            }
+            Future<ChatResponse> done = completions.poll(hedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+            if (done == null && start(prompt, completions, attempts, used)) {
+                hedged.increment();
+                log.debug("Hedging chat call on {} after {}", attempts.getLast().endpoint, hedgeDelay());
+            }
+
+            int pending = attempts.size();
+            while (true) {
+                if (done == null) {
+                    done = completions.take();
+                }
+                pending--;
+                try {
+                    ChatResponse response = done.get();
+                    if (attempts.size() > 1 && done != attempts.getFirst().future) {
+                        hedgeWins.increment();
+                    }
+                    return response;
+                } catch (ExecutionException e) {
+                    // Fail over when nothing else is still running
+                    if (pending == 0) {
+                        if (!start(prompt, completions, attempts, used)) {
+                            throw e.getCause() instanceof RuntimeException runtime
+                                    ? runtime
+                                    : new IllegalStateException("Ollama call failed", e.getCause());
+                        }
+                        pending++;
+                    }
+                }
+                done = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Ollama", e);
+        } finally {
+            attempts.forEach(Attempt::cancel);
+        }
+    }
+
+    /**
+     * Streams on the least loaded endpoint not tried yet. The endpoint is acquired on subscription and released
+     * exactly once, before a failure is passed on, so a failover never sees it as still busy.
+     *
+     * @param failure Error of the previous endpoint, surfaced when no endpoint is left to fail over to
+     */
+    private Flux<ChatResponse> streamOn(Prompt prompt, Set<OllamaEndpoint> used, Throwable failure) {
+        return Flux.defer(() -> {
+            OllamaEndpoint endpoint = pool.acquire(used);
+            if (endpoint == null) {
+                return Flux.error(failure != null ? failure : new IllegalStateException("No Ollama endpoint configured"));
+            }
+            used.add(endpoint);
+            AtomicBoolean released = new AtomicBoolean();
+            AtomicBoolean emitted = new AtomicBoolean();
+            return Flux.defer(() -> endpoint.getChatModel().stream(prompt))
+                    .doOnNext(response -> emitted.set(true))
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            pool.release(endpoint, false);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (released.compareAndSet(false, true)) {
+                            if (signal == SignalType.CANCEL) {
+                                pool.releaseCancelled(endpoint);
+                            } else {
+                                pool.release(endpoint, signal != SignalType.ON_ERROR);
+                            }
+                        }
+                    })
+                    .onErrorResume(e -> !emitted.get(), e -> {
+                        log.warn("Ollama stream on {} failed before its first response: {}", endpoint, e.getMessage());
+                        return streamOn(prompt, used, e);
+                    });
+        });
+    }
+
+    private boolean start(Prompt prompt, CompletionService<ChatResponse> completions, List<Attempt> attempts,
+                          Set<OllamaEndpoint> used) {
+        OllamaEndpoint endpoint = pool.acquire(used);
+        if (endpoint == null) {
+            return false;
+        }
+        used.add(endpoint);
+        Attempt attempt = new Attempt(endpoint, prompt);
+        attempts.add(attempt);
+        attempt.future = completions.submit(attempt);
+        return true;
+    }
+
+    /**
+     * One call on one endpoint. Releases the endpoint exactly once, whether it completes, fails or is cancelled.
+     */
+    private final class Attempt implements Callable<ChatResponse> {
+
+        private final OllamaEndpoint endpoint;
+        private final Prompt prompt;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile Future<ChatResponse> future;
+
+        Attempt(OllamaEndpoint endpoint, Prompt prompt) {
+            this.endpoint = endpoint;
+            this.prompt = prompt;
+        }
+
+        @Override
+        public ChatResponse call() {
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = endpoint.getChatModel().call(prompt);
+                latencies.record(System.nanoTime() - start);
+                if (released.compareAndSet(false, true)) {
+                    pool.release(endpoint, true);
+                }
+                return response;
+            } catch (RuntimeException e) {
+                if (released.compareAndSet(false, true)) {
+                    if (cancelled) {
+                        pool.releaseCancelled(endpoint);
+                    } else {
+                        pool.release(endpoint, false);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        void cancel() {
+            if (future == null || future.isDone()) {
+                return;
+            }
+            cancelled = true;
+            future.cancel(true);
+            if (released.compareAndSet(false, true)) {
+                pool.releaseCancelled(endpoint);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.nocode.ai.service.routing;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * {@link EmbeddingModel} that sends each call to the least loaded endpoint of an {@link EndpointPool},
+ * failing over to the others. Embedding calls are short, so they are not hedged.
+ */
+public class RoutingEmbeddingModel implements EmbeddingModel {
+
+    private final EndpointPool pool;
+
+    public RoutingEmbeddingModel(EndpointPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return pool.withFailover(endpoint -> endpoint.getEmbeddingModel().call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return pool.withFailover(endpoint -> endpoint.getEmbeddingModel().embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return pool.withFailover(endpoint -> endpoint.getEmbeddingModel().dimensions());
+    }
+}
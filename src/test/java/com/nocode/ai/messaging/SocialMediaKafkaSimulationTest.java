@@ -173,6 +173,8 @@ class SocialMediaKafkaSimulationTest {
     void setup() {
         // Mock Identity Service
         when(identityService.resolveIdentity(any(), any(), any())).thenReturn(java.util.UUID.randomUUID());
+        when(identityService.resolve(any(), any(), any())).thenReturn(new IdentityService.ResolvedIdentity(
+                java.util.UUID.randomUUID(), com.nocode.ai.domain.model.CustomerIdentity.TrustLevel.TRUSTED));
         when(identityService.getTrustLevel(any(), any(), any())).thenReturn(com.nocode.ai.domain.model.CustomerIdentity.TrustLevel.TRUSTED);
 
         // Configuração do Mock da AI (para focar no teste do Kafka)
@@ -0,0 +1,115 @@
+package com.nocode.ai.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.client.ChatClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.domain.model.AnalysisResult;
+import com.nocode.ai.domain.model.AnalysisResult.Sentiment;
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.domain.repository.AnalysisResultRepository;
+import com.nocode.ai.domain.repository.PendingMemoryRepository;
+import com.nocode.ai.service.execution.AdaptiveConcurrencyLimiter;
+import com.nocode.ai.service.execution.LlmCircuitBreaker;
+import com.nocode.ai.service.execution.MemoryIngestionExecutor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MemoryServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatClient chatClient = mock(ChatClient.class);
+    private final KnowledgeIngestionService ingestion = mock(KnowledgeIngestionService.class);
+    private final AdaptiveConcurrencyLimiter limiter = mock(AdaptiveConcurrencyLimiter.class);
+    private final MemoryIngestionExecutor ingestionExecutor = mock(MemoryIngestionExecutor.class);
+    private final LlmCircuitBreaker breaker = new LlmCircuitBreaker(true, 10, 4, 0.5, 10_000, 0.8, 100, 2, meterRegistry);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ChatClient.ChatClientRequestSpec request = mock(ChatClient.ChatClientRequestSpec.class, Answers.RETURNS_SELF);
+        ChatClient.CallResponseSpec response = mock(ChatClient.CallResponseSpec.class);
+        when(chatClient.prompt()).thenReturn(request);
+        when(request.call()).thenReturn(response);
+        when(response.content()).thenReturn("LLM summary.");
+        when(limiter.execute(any(UUID.class), anyString(), any(Supplier.class)))
+                .thenAnswer(invocation -> invocation.getArgument(2, Supplier.class).get());
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(ingestionExecutor).submit(any(), any(Runnable.class));
+    }
+
+    private MemoryService service(String mode) {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class);
+        when(builder.build()).thenReturn(chatClient);
+        return new MemoryService(builder, ingestion, limiter, breaker, new ObjectMapper(), ingestionExecutor,
+                mock(PendingMemoryRepository.class), mock(AnalysisResultRepository.class), mode, 0.6, meterRegistry);
+    }
+
+    @Test
+    void buildsTheMemoryFromAConfidentAnalysisWithoutCallingTheModel() {
+        service("analysis").saveInteractionMemory(message(), result(0.9));
+
+        ArgumentCaptor<String> memory = ArgumentCaptor.forClass(String.class);
+        verify(ingestion).ingestText(memory.capture(), anyMap());
+        assertThat(memory.getValue()).contains("Order arrived broken.", "sentiment NEGATIVE", "COMPLAINT", "Keywords: broken, refund");
+        verify(chatClient, never()).prompt();
+        assertThat(meterRegistry.get("memory.documents").tag("source", "analysis").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void asksTheModelWhenTheAnalysisIsNotConfident() {
+        service("analysis").saveInteractionMemory(message(), result(0.3));
+
+        verify(ingestion).ingestText(eq("LLM summary."), anyMap());
+        assertThat(meterRegistry.get("memory.documents").tag("source", "llm").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void llmModeAlwaysAsksTheModel() {
+        service("llm").saveInteractionMemory(message(), result(0.9));
+
+        verify(chatClient).prompt();
+        verify(ingestion).ingestText(anyString(), anyMap());
+    }
+
+    private static SocialMessage message() {
+        return SocialMessage.builder()
+                .id(1L)
+                .brandId(UUID.randomUUID())
+                .customerId(UUID.randomUUID())
+                .platform("TWITTER")
+                .platformUser("@ana")
+                .content("My order arrived broken, I want a refund")
+                .build();
+    }
+
+    private static AnalysisResult result(double confidence) {
+        return AnalysisResult.builder()
+                .id(1L)
+                .sentiment(Sentiment.NEGATIVE)
+                .category("COMPLAINT")
+                .summary("Order arrived broken.")
+                .confidenceScore(confidence)
+                .rawAiResponse("{\"keywords\": [\"broken\", \"refund\"], \"sentiment\": \"NEGATIVE\"}")
+                .build();
+    }
+}
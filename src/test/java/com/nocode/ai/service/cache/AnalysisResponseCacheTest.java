@@ -0,0 +1,48 @@
+package com.nocode.ai.service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+import com.nocode.ai.domain.model.AnalysisResult.Sentiment;
+import com.nocode.ai.service.InferenceOutcome;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AnalysisResponseCacheTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hitsAreNotReportedAsModelAnswers() {
+        AnalysisResponseCache cache = new AnalysisResponseCache(true, false, 60, 100,
+                mock(ObjectProvider.class), new ObjectMapper(), new SimpleMeterRegistry());
+        UUID brandId = UUID.randomUUID();
+        AtomicInteger modelCalls = new AtomicInteger();
+        AiAnalysisResponse response = new AiAnalysisResponse(Sentiment.NEGATIVE, "COMPLAINT", "Lost package", 0.9,
+                List.of(), List.of(), false, false);
+
+        InferenceOutcome first = cache.getOrCompute(brandId, "Where is my package?", false, () -> {
+            modelCalls.incrementAndGet();
+            return new InferenceOutcome(response, "llama3");
+        });
+        InferenceOutcome repost = cache.getOrCompute(brandId, "  where is my   PACKAGE? ", false, () -> {
+            modelCalls.incrementAndGet();
+            return new InferenceOutcome(response, "llama3");
+        });
+
+        assertThat(modelCalls).hasValue(1);
+        assertThat(first.analyzedBy()).isEqualTo("llama3");
+        assertThat(first.fromModel()).isTrue();
+        assertThat(repost.analyzedBy()).isEqualTo(InferenceOutcome.CACHE);
+        assertThat(repost.fromModel()).isFalse();
+        assertThat(repost.response()).isEqualTo(response);
+    }
+}
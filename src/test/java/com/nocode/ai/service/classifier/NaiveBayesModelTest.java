@@ -0,0 +1,57 @@
+package com.nocode.ai.service.classifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.nocode.ai.service.dedup.SimHash;
+
+class NaiveBayesModelTest {
+
+    private final NaiveBayesModel model = new NaiveBayesModel();
+
+    @Test
+    void untrainedModelHasNoPrediction() {
+        assertThat(model.predict(SimHash.tokens("anything at all"))).isNull();
+        assertThat(model.documents()).isZero();
+    }
+
+    @Test
+    void predictsTheLabelSeenWithSimilarWords() {
+        for (int i = 0; i < 20; i++) {
+            model.learn(SimHash.tokens("love the product, amazing service, thank you"), "PRAISE");
+            model.learn(SimHash.tokens("my order never arrived and support ignores me"), "COMPLAINT");
+            model.learn(SimHash.tokens("buy cheap followers now click this link"), "SPAM");
+        }
+
+        NaiveBayesModel.Prediction praise = model.predict(SimHash.tokens("amazing service, love it"));
+        NaiveBayesModel.Prediction complaint = model.predict(SimHash.tokens("order never arrived"));
+
+        assertThat(praise.label()).isEqualTo("PRAISE");
+        assertThat(praise.probability()).isGreaterThan(0.95);
+        assertThat(complaint.label()).isEqualTo("COMPLAINT");
+        assertThat(model.documents()).isEqualTo(60);
+    }
+
+    @Test
+    void unseenWordsGiveLowConfidence() {
+        model.learn(SimHash.tokens("love the product"), "PRAISE");
+        model.learn(SimHash.tokens("hate the product"), "COMPLAINT");
+
+        NaiveBayesModel.Prediction prediction = model.predict(SimHash.tokens("what time does the store open"));
+
+        assertThat(prediction.probability()).isLessThan(0.6);
+    }
+
+    @Test
+    void topFeaturesFavourWordsSpecificToTheLabel() {
+        model.learn(SimHash.tokens("refund refund late delivery"), "COMPLAINT");
+        model.learn(SimHash.tokens("great delivery team"), "PRAISE");
+
+        List<String> features = model.topFeatures(SimHash.tokens("late refund delivery"), "COMPLAINT", 2);
+
+        assertThat(features).containsExactlyInAnyOrder("refund", "late");
+    }
+}
@@ -0,0 +1,117 @@
+package com.nocode.ai.service.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.nocode.ai.api.dto.AiAnalysisResponse;
+import com.nocode.ai.domain.model.AnalysisResult.Sentiment;
+import com.nocode.ai.service.dedup.NearDuplicateDetector.ClusterMembership;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NearDuplicateDetectorTest {
+
+    private final NearDuplicateDetector detector = new NearDuplicateDetector(true, 7, 5, 30, 50, new SimpleMeterRegistry());
+
+    @Test
+    void repostsDifferingByHandleAndUrlHaveCloseFingerprints() {
+        long original = SimHash.fingerprint(SimHash.tokens(
+                "@acme my order 123 never arrived and support does not answer https://t.co/abc"));
+        long repost = SimHash.fingerprint(SimHash.tokens(
+                "@otheruser my order 987 never arrived and support does not answer https://t.co/xyz"));
+        long unrelated = SimHash.fingerprint(SimHash.tokens(
+                "loved the new store layout, the staff was super friendly today"));
+
+        assertThat(SimHash.distance(original, repost)).isLessThanOrEqualTo(7);
+        assertThat(SimHash.distance(original, unrelated)).isGreaterThan(7);
+    }
+
+    @Test
+    void nearDuplicatesJoinTheLeaderClusterAndReuseItsAnalysis() {
+        UUID brandId = UUID.randomUUID();
+
+        ClusterMembership leader = detector.assign(brandId, "My package was lost again, worst delivery ever @acme").orElseThrow();
+        ClusterMembership follower = detector.assign(brandId, "my package was lost again!!! worst delivery ever @brand").orElseThrow();
+
+        assertThat(leader.isLeader()).isTrue();
+        assertThat(follower.isLeader()).isFalse();
+        assertThat(follower.clusterSize()).isEqualTo(2);
+
+        AiAnalysisResponse response = new AiAnalysisResponse(Sentiment.NEGATIVE, "COMPLAINT", "Lost package", 0.9,
+                List.of("package"), List.of(), false, true);
+        leader.complete(response, 42L, true);
+
+        assertThat(follower.awaitAnalysis(Duration.ofSeconds(1)))
+                .hasValueSatisfying(shared -> {
+                    assertThat(shared.resultId()).isEqualTo(42L);
+                    assertThat(shared.response()).isEqualTo(response);
+                });
+    }
+
+    @Test
+    void clustersAreIsolatedPerBrand() {
+        String content = "The app keeps crashing when I try to pay my bill";
+
+        assertThat(detector.assign(UUID.randomUUID(), content)).hasValueSatisfying(m -> assertThat(m.isLeader()).isTrue());
+        assertThat(detector.assign(UUID.randomUUID(), content)).hasValueSatisfying(m -> assertThat(m.isLeader()).isTrue());
+    }
+
+    @Test
+    void shortMessagesAreNotFingerprinted() {
+        assertThat(detector.assign(UUID.randomUUID(), "great job")).isEmpty();
+    }
+
+    @Test
+    void failedLeaderReleasesFollowersWithoutAnalysis() {
+        UUID brandId = UUID.randomUUID();
+        String content = "Charged twice for the same subscription this month, please refund";
+
+        ClusterMembership leader = detector.assign(brandId, content).orElseThrow();
+        ClusterMembership follower = detector.assign(brandId, content).orElseThrow();
+        leader.fail();
+
+        assertThat(follower.awaitAnalysis(Duration.ofSeconds(1))).isEmpty();
+    }
+
+    @Test
+    void nextMemberAfterAFailedLeaderLeadsTheCluster() {
+        UUID brandId = UUID.randomUUID();
+        String content = "Internet has been down for three days in my neighbourhood, nobody answers";
+
+        ClusterMembership first = detector.assign(brandId, content).orElseThrow();
+        first.fail();
+        ClusterMembership second = detector.assign(brandId, content).orElseThrow();
+        ClusterMembership third = detector.assign(brandId, content).orElseThrow();
+
+        assertThat(second.isLeader()).isTrue();
+        assertThat(third.isLeader()).isFalse();
+        assertThat(third.clusterSize()).isEqualTo(3);
+        assertThat(third.awaitsLeader()).isTrue();
+
+        second.complete(new AiAnalysisResponse(Sentiment.NEGATIVE, "COMPLAINT", "Outage", 0.9,
+                List.of("internet"), List.of(), false, false), 7L, false);
+
+        assertThat(third.whenLeaderDone(Duration.ofSeconds(1))).isCompleted();
+        assertThat(third.awaitsLeader()).isFalse();
+        assertThat(third.awaitAnalysis(Duration.ofSeconds(1))).hasValueSatisfying(shared -> assertThat(shared.resultId()).isEqualTo(7L));
+    }
+
+    @Test
+    void followerStopsWaitingAfterTheTimeoutWithoutBlocking() {
+        UUID brandId = UUID.randomUUID();
+        String content = "Why was my card blocked after paying at your store yesterday evening";
+
+        detector.assign(brandId, content).orElseThrow();
+        ClusterMembership follower = detector.assign(brandId, content).orElseThrow();
+
+        follower.whenLeaderDone(Duration.ofMillis(50)).join();
+
+        assertThat(follower.awaitsLeader()).isFalse();
+        assertThat(follower.awaitAnalysis(Duration.ofSeconds(10))).isEmpty();
+    }
+}
@@ -0,0 +1,196 @@
+package com.nocode.ai.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueue, long maxWaitMs) {
+        return limiter(initialLimit, maxQueue, maxWaitMs, 0);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueue, long maxWaitMs, int reservedSlots) {
+        // Latency never counts as congestion here, only failures do
+        BrandFairQueue fairQueue = new BrandFairQueue(null, true, 1.0, 64, 1, 0, 0, 60_000, meterRegistry);
+        return new AdaptiveConcurrencyLimiter(true, initialLimit, 1, 16, 0.5, 1e9, 0, 200, maxQueue, maxWaitMs,
+                reservedSlots > 0, reservedSlots, fairQueue, meterRegistry);
+    }
+
+    @Test
+    void failuresShrinkTheLimitMultiplicatively() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 10, 1000);
+
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new IllegalStateException("Ollama timed out");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThat(meterRegistry.get("llm.limiter.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void limitGrowsOnlyWhileCallsUseIt() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 10, 1000);
+
+        // One call at a time never uses half of a limit above 2
+        for (int i = 0; i < 50; i++) {
+            limiter.execute(() -> "ok");
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int round = 0; round < 20; round++) {
+            int concurrency = limiter.getLimit();
+            CountDownLatch running = new CountDownLatch(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                executor.submit(() -> limiter.execute(() -> {
+                    running.countDown();
+                    try {
+                        running.await(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "ok";
+                }));
+            }
+            running.await(1, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(limiter.getLimit()).isGreaterThan(2);
+    }
+
+    @Test
+    void callsBeyondTheLimitAndQueueAreRejected() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0, 1000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Thread holder = Thread.ofVirtual().start(() -> limiter.execute(() -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok";
+        }));
+        started.await();
+
+        assertThatThrownBy(() -> limiter.execute(() -> "too many"))
+                .isInstanceOf(AdaptiveConcurrencyLimiter.LimitExceededException.class);
+        assertThat(meterRegistry.get("llm.limiter.rejections").tag("reason", "queue-full").counter().count()).isEqualTo(1.0);
+
+        finish.countDown();
+        holder.join();
+        assertThat(limiter.execute(() -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void queuedCallsTimeOut() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 5, 50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Thread holder = Thread.ofVirtual().start(() -> limiter.execute(() -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok";
+        }));
+        started.await();
+
+        assertThatThrownBy(() -> limiter.execute(() -> "late"))
+                .isInstanceOf(AdaptiveConcurrencyLimiter.LimitExceededException.class);
+        assertThat(meterRegistry.get("llm.limiter.rejections").tag("reason", "timeout").counter().count()).isEqualTo(1.0);
+
+        finish.countDown();
+        holder.join();
+    }
+
+    @Test
+    void reservedSlotsOnlyAdmitPriorityCalls() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 5, 50, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Thread bulk = Thread.ofVirtual().start(() -> limiter.execute(() -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok";
+        }));
+        started.await();
+
+        assertThat(limiter.execute(null, true, () -> "priority")).isEqualTo("priority");
+        assertThatThrownBy(() -> limiter.execute(() -> "bulk"))
+                .isInstanceOf(AdaptiveConcurrencyLimiter.LimitExceededException.class);
+
+        finish.countDown();
+        bulk.join();
+    }
+
+    @Test
+    void aBrandOverItsRateLimitIsRejectedOnItsOwn() {
+        BrandFairQueue fairQueue = new BrandFairQueue(null, true, 1.0, 8, 1, 60, 0, 60_000, meterRegistry);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 4, 1, 16, 0.5, 1e9, 0, 200, 10, 50,
+                false, 0, fairQueue, meterRegistry);
+        UUID noisy = UUID.randomUUID();
+
+        assertThat(limiter.execute(noisy, () -> "ok")).isEqualTo("ok");
+        assertThatThrownBy(() -> limiter.execute(noisy, () -> "over budget"))
+                .isInstanceOf(BrandRateLimitedException.class)
+                .isNotInstanceOf(LlmUnavailableException.class)
+                .satisfies(e -> assertThat(((BrandRateLimitedException) e).getRetryAfter()).isPositive());
+
+        assertThat(meterRegistry.get("llm.limiter.rejections").tag("reason", "rate-limit").counter().count()).isEqualTo(1.0);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        assertThat(limiter.execute(UUID.randomUUID(), () -> "other brand")).isEqualTo("other brand");
+    }
+
+    @Test
+    void slowCallClassesAreNotComparedWithFastOnes() {
+        BrandFairQueue fairQueue = new BrandFairQueue(null, true, 1.0, 64, 1, 0, 0, 60_000, meterRegistry);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 8, 1, 16, 0.5, 2.0, 0, 200, 10, 1000,
+                false, 0, fairQueue, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.execute(null, "small", () -> "fast");
+        }
+        for (int i = 0; i < 3; i++) {
+            limiter.execute(null, "large", () -> sleep(30));
+        }
+        assertThat(limiter.getLimit()).isEqualTo(8);
+
+        limiter.execute(null, "small", () -> sleep(30));
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "slow";
+    }
+}
@@ -0,0 +1,102 @@
+package com.nocode.ai.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BrandFairQueueTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID crisisBrand = UUID.randomUUID();
+    private final UUID quietBrand = UUID.randomUUID();
+
+    private static BrandFairQueue.Settings settings(UUID brandId, double weight, int maxInFlight) {
+        return new BrandFairQueue.Settings(brandId, weight, maxInFlight, System.nanoTime());
+    }
+
+    @Test
+    void aQuietBrandDoesNotWaitBehindAnotherBrandsBacklog() {
+        BrandFairQueue queue = new BrandFairQueue(null, true, 1.0, 8, 100, 0, 0, 60_000, meterRegistry);
+        BrandFairQueue.Settings crisis = settings(crisisBrand, 1.0, 8);
+
+        BrandFairQueue.Ticket first = queue.enqueue(crisis, false);
+        BrandFairQueue.Ticket second = queue.enqueue(crisis, false);
+        queue.enqueue(crisis, false);
+        long now = System.nanoTime();
+        queue.start(first, now);
+
+        BrandFairQueue.Ticket quiet = queue.enqueue(settings(quietBrand, 1.0, 8), false);
+
+        assertThat(queue.isNext(quiet, now)).isTrue();
+        assertThat(queue.isNext(second, now)).isFalse();
+    }
+
+    @Test
+    void weightsSetTheShareOfEachBrand() {
+        BrandFairQueue queue = new BrandFairQueue(null, true, 1.0, 8, 100, 0, 0, 60_000, meterRegistry);
+        BrandFairQueue.Settings heavy = settings(crisisBrand, 3.0, 8);
+        BrandFairQueue.Settings light = settings(quietBrand, 1.0, 8);
+        Map<BrandFairQueue.Ticket, UUID> tickets = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            tickets.put(queue.enqueue(heavy, false), crisisBrand);
+            tickets.put(queue.enqueue(light, false), quietBrand);
+        }
+
+        int heavyServed = 0;
+        for (int i = 0; i < 8; i++) {
+            long now = System.nanoTime();
+            BrandFairQueue.Ticket next = tickets.keySet().stream()
+                    .filter(ticket -> queue.isNext(ticket, now))
+                    .findFirst()
+                    .orElseThrow();
+            queue.start(next, now);
+            queue.finish(next);
+            if (tickets.remove(next).equals(crisisBrand)) {
+                heavyServed++;
+            }
+        }
+
+        assertThat(heavyServed).isEqualTo(6);
+    }
+
+    @Test
+    void brandsOverTheirInFlightOrRateLimitAreSkipped() {
+        BrandFairQueue queue = new BrandFairQueue(null, true, 1.0, 8, 1, 60, 0, 60_000, meterRegistry);
+        BrandFairQueue.Ticket crisisCall = queue.enqueue(settings(crisisBrand, 1.0, 1), false);
+        long now = System.nanoTime();
+        queue.start(crisisCall, now);
+
+        BrandFairQueue.Ticket overLimit = queue.enqueue(settings(crisisBrand, 1.0, 1), false);
+        BrandFairQueue.Ticket quiet = queue.enqueue(settings(quietBrand, 1.0, 8), false);
+
+        assertThat(queue.isNext(overLimit, now)).isFalse();
+        assertThat(queue.isNext(quiet, now)).isTrue();
+
+        // Burst of 1 at 60 per minute: the next token is about a second away
+        queue.finish(crisisCall);
+        assertThat(queue.nanosUntilBudget(overLimit, now)).isBetween(900_000_000L, 1_000_000_000L);
+        assertThat(queue.isNext(overLimit, now)).isFalse();
+    }
+
+    @Test
+    void priorityCallsGoFirstEvenWithoutRateBudget() {
+        BrandFairQueue queue = new BrandFairQueue(null, true, 1.0, 8, 1, 60, 0, 60_000, meterRegistry);
+        BrandFairQueue.Ticket spent = queue.enqueue(settings(crisisBrand, 1.0, 8), false);
+        long now = System.nanoTime();
+        queue.start(spent, now);
+        queue.finish(spent);
+
+        BrandFairQueue.Ticket bulk = queue.enqueue(settings(quietBrand, 1.0, 8), false);
+        BrandFairQueue.Ticket priority = queue.enqueue(settings(crisisBrand, 1.0, 8), true);
+
+        assertThat(queue.nanosUntilBudget(priority, now)).isZero();
+        assertThat(queue.isNext(priority, now)).isTrue();
+        assertThat(queue.isNext(bulk, now)).isFalse();
+    }
+}
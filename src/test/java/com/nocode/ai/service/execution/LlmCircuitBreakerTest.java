@@ -0,0 +1,95 @@
+package com.nocode.ai.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LlmCircuitBreakerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LlmCircuitBreaker breaker = new LlmCircuitBreaker(true, 10, 4, 0.5, 10_000, 0.8, 100, 2, meterRegistry);
+
+    private void fail() {
+        assertThatThrownBy(() -> breaker.execute(() -> {
+            throw new IllegalStateException("Connection refused");
+        })).isInstanceOf(LlmUnavailableException.class);
+    }
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        for (int i = 0; i < 3; i++) {
+            breaker.execute(() -> "ok");
+        }
+        fail();
+        fail();
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.CLOSED);
+
+        fail();
+
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> breaker.execute(() -> "not called"))
+                .isInstanceOf(LlmUnavailableException.class);
+        assertThat(meterRegistry.get("llm.circuit.rejections").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void closesAfterSuccessfulProbesAndReopensOnAFailedOne() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertThat(breaker.isClosed()).isFalse();
+
+        Thread.sleep(150);
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.HALF_OPEN);
+        fail();
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.OPEN);
+
+        Thread.sleep(150);
+        breaker.execute(() -> "ok");
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.HALF_OPEN);
+        breaker.execute(() -> "ok");
+        assertThat(breaker.isClosed()).isTrue();
+    }
+
+    @Test
+    void limiterRejectionsDoNotOpenTheBreaker() throws InterruptedException {
+        BrandFairQueue fairQueue = new BrandFairQueue(null, true, 1.0, 64, 1, 0, 0, 60_000, meterRegistry);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 1, 1, 1, 0.5, 1e9, 0, 200, 0, 1000,
+                false, 0, fairQueue, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> limiter.execute(() -> breaker.execute(() -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok";
+        })));
+        started.await();
+
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> limiter.execute(() -> breaker.execute(() -> "queue full")))
+                    .isInstanceOf(AdaptiveConcurrencyLimiter.LimitExceededException.class);
+            // Also when a limiter rejection surfaces inside the breaker
+            assertThatThrownBy(() -> breaker.execute(() -> {
+                throw new AdaptiveConcurrencyLimiter.LimitExceededException("Brand is over its LLM rate limit");
+            })).isInstanceOf(AdaptiveConcurrencyLimiter.LimitExceededException.class);
+        }
+        finish.countDown();
+        holder.join();
+
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.CLOSED);
+        for (int i = 0; i < 3; i++) {
+            fail();
+        }
+        // Three failures out of four recorded calls; the twenty rejections were not counted as successes either
+        assertThat(breaker.getState()).isEqualTo(LlmCircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,107 @@
+package com.nocode.ai.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.nocode.ai.domain.model.PendingMemory;
+import com.nocode.ai.domain.repository.PendingMemoryRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MemoryIngestionExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PendingMemoryRepository pendingMemoryRepository = mock(PendingMemoryRepository.class);
+    private final List<Long> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private MemoryIngestionExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    /**
+     * Executor with one thread, busy with result 0 until released, and room for one more memory.
+     */
+    private MemoryIngestionExecutor busyExecutor(String overflowPolicy) throws InterruptedException {
+        executor = new MemoryIngestionExecutor(pendingMemoryRepository, 1, 1, overflowPolicy, 5000, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(0L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(0L);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return executor;
+    }
+
+    private Runnable write(long resultId) {
+        return () -> written.add(resultId);
+    }
+
+    @Test
+    void dropOldestDiscardsTheLongestWaitingMemory() throws InterruptedException {
+        busyExecutor("drop-oldest");
+        executor.submit(1L, write(1));
+        executor.submit(2L, write(2));
+
+        assertThat(meterRegistry.get("memory.ingestion.backlog").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("memory.ingestion.oldest-age").gauge().value()).isGreaterThanOrEqualTo(0.0);
+        release.countDown();
+        executor.shutdown();
+
+        assertThat(written).containsExactly(0L, 2L);
+        assertThat(meterRegistry.get("memory.ingestion.dropped").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void spillStoresTheMemoryThatDoesNotFit() throws InterruptedException {
+        busyExecutor("spill");
+        executor.submit(1L, write(1));
+        executor.submit(2L, write(2));
+
+        ArgumentCaptor<PendingMemory> spilled = ArgumentCaptor.forClass(PendingMemory.class);
+        verify(pendingMemoryRepository).save(spilled.capture());
+        assertThat(spilled.getValue().getAnalysisResultId()).isEqualTo(2L);
+        release.countDown();
+        executor.shutdown();
+
+        assertThat(written).containsExactly(0L, 1L);
+        assertThat(meterRegistry.get("memory.ingestion.spilled").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void blockWaitsForRoomAndDrainsOnShutdown() throws InterruptedException {
+        busyExecutor("block");
+        executor.submit(1L, write(1));
+        Thread producer = Thread.ofPlatform().start(() -> executor.submit(2L, write(2)));
+        producer.join(200);
+        assertThat(producer.isAlive()).isTrue();
+
+        release.countDown();
+        producer.join(5000);
+        executor.shutdown();
+
+        assertThat(written).containsExactly(0L, 1L, 2L);
+        verify(pendingMemoryRepository, never()).save(any());
+        assertThat(meterRegistry.get("memory.ingestion.dropped").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,39 @@
+package com.nocode.ai.service.identity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class UnionFindTest {
+
+    private final UnionFind<String> unionFind = new UnionFind<>();
+
+    @Test
+    void linkedElementsShareTheRootOfTheSecondOne() {
+        assertThat(unionFind.link("instagram", "whatsapp")).isTrue();
+        assertThat(unionFind.link("twitter", "instagram")).isTrue();
+
+        assertThat(unionFind.find("twitter")).isEqualTo("whatsapp");
+        assertThat(unionFind.find("instagram")).isEqualTo("whatsapp");
+        assertThat(unionFind.members("twitter")).containsExactlyInAnyOrder("instagram", "twitter", "whatsapp");
+        assertThat(unionFind.link("whatsapp", "twitter")).isFalse();
+    }
+
+    @Test
+    void unknownElementsAreTheirOwnSet() {
+        assertThat(unionFind.find("email")).isEqualTo("email");
+        assertThat(unionFind.members("email")).containsExactly("email");
+    }
+
+    @Test
+    void mergingTwoGroupsKeepsAllMembers() {
+        unionFind.link("a1", "a");
+        unionFind.link("a2", "a");
+        unionFind.link("b1", "b");
+
+        unionFind.link("a", "b");
+
+        assertThat(unionFind.find("a2")).isEqualTo("b");
+        assertThat(unionFind.members("b1")).containsExactlyInAnyOrder("a", "a1", "a2", "b", "b1");
+    }
+}
@@ -0,0 +1,52 @@
+package com.nocode.ai.service.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class JsonFieldScannerTest {
+
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    private final JsonFieldScanner scanner = new JsonFieldScanner(fields::put);
+
+    @Test
+    void reportsTopLevelFieldsAcrossChunkBoundaries() {
+        String json = """
+            ```json
+            { "sentiment": "URGENT", "category": "COMPLAINT", "confidenceScore": 0.93,
+              "keywords": ["fraud", "card"], "requiresUrgentAttention": true }
+            ```""";
+
+        for (int i = 0; i < json.length(); i += 3) {
+            scanner.feed(json.substring(i, Math.min(json.length(), i + 3)));
+        }
+
+        assertThat(fields).containsExactly(
+                Map.entry("sentiment", "URGENT"),
+                Map.entry("category", "COMPLAINT"),
+                Map.entry("confidenceScore", "0.93"),
+                Map.entry("requiresUrgentAttention", "true"));
+    }
+
+    @Test
+    void reportsAFieldBeforeTheRestOfTheDocumentArrives() {
+        scanner.feed("{\"sentiment\": \"URG");
+        assertThat(fields).isEmpty();
+
+        scanner.feed("ENT\", \"summary\": \"Customer threat");
+
+        assertThat(fields).containsExactly(Map.entry("sentiment", "URGENT"));
+    }
+
+    @Test
+    void ignoresNestedFieldsAndHandlesEscapedQuotes() {
+        scanner.feed("{\"summary\": \"said \\\"scam\\\"\", \"meta\": {\"sentiment\": \"URGENT\"}, \"sentiment\": \"NEGATIVE\"}");
+
+        assertThat(fields).containsExactly(
+                Map.entry("summary", "said \"scam\""),
+                Map.entry("sentiment", "NEGATIVE"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.nocode.ai.service.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocode.ai.service.inference.JsonResponseExtractor.Extraction;
+
+class JsonResponseExtractorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void cleanDocumentIsReturnedUnchanged() {
+        Extraction extraction = JsonResponseExtractor.extract("{\"sentiment\": \"NEGATIVE\", \"keywords\": [\"late\"]}");
+
+        assertThat(extraction.repaired()).isFalse();
+        assertThat(extraction.json()).isEqualTo("{\"sentiment\": \"NEGATIVE\", \"keywords\": [\"late\"]}");
+    }
+
+    @Test
+    void dropsCodeFencesAndTrailingText() throws Exception {
+        Extraction extraction = JsonResponseExtractor.extract("""
+            Here is the analysis:
+            ```json
+            {"sentiment": "POSITIVE", "summary": "Liked the café"}
+            ```
+            Let me know if you need anything else.""");
+
+        assertThat(extraction.repaired()).isTrue();
+        assertThat(parse(extraction).get("summary").asText()).isEqualTo("Liked the café");
+    }
+
+    @Test
+    void escapesQuotesAndLineBreaksInsideStrings() throws Exception {
+        Extraction extraction = JsonResponseExtractor.extract(
+                "{\"summary\": \"Customer called us \"scammers\" twice\nand left\", \"category\": \"COMPLAINT\"}");
+
+        JsonNode node = parse(extraction);
+        assertThat(node.get("summary").asText()).isEqualTo("Customer called us \"scammers\" twice\nand left");
+        assertThat(node.get("category").asText()).isEqualTo("COMPLAINT");
+    }
+
+    @Test
+    void closesTruncatedArraysAndObjects() throws Exception {
+        JsonNode node = parse(JsonResponseExtractor.extract(
+                "{\"sentiment\": \"URGENT\", \"keywords\": [\"fraud\", \"card\", \"blo"));
+
+        assertThat(node.get("sentiment").asText()).isEqualTo("URGENT");
+        assertThat(node.get("keywords")).hasSize(3);
+    }
+
+    @Test
+    void dropsDanglingKeysPartialLiteralsAndTrailingCommas() throws Exception {
+        assertThat(parse(JsonResponseExtractor.extract("{\"category\": \"SPAM\", \"summ")).has("summ")).isFalse();
+        assertThat(parse(JsonResponseExtractor.extract("{\"category\": \"SPAM\", \"requiresUrgentAttention\": tr")).get("requiresUrgentAttention").isNull()).isTrue();
+        assertThat(parse(JsonResponseExtractor.extract("{\"keywords\": [\"a\", \"b\",], }")).get("keywords")).hasSize(2);
+    }
+
+    @Test
+    void responseWithoutJsonYieldsNothing() {
+        assertThat(JsonResponseExtractor.extract("I cannot analyze this message.")).isNull();
+    }
+
+    private JsonNode parse(Extraction extraction) throws Exception {
+        return objectMapper.readTree(extraction.json());
+    }
+}
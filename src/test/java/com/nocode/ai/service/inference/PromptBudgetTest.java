@@ -0,0 +1,67 @@
+package com.nocode.ai.service.inference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import com.nocode.ai.domain.model.SocialMessage;
+import com.nocode.ai.domain.repository.CustomerAliasRepository;
+import com.nocode.ai.service.identity.CustomerAliasGraph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PromptBudgetTest {
+
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CustomerAliasGraph aliasGraph = new CustomerAliasGraph(mock(CustomerAliasRepository.class), meterRegistry);
+
+    @Test
+    void addsHistoryInRankOrderUntilTheBudgetIsSpent() {
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(
+                new Document("Most relevant: customer complained about a late delivery last week."),
+                new Document("Less relevant: " + "customer asked about store opening hours. ".repeat(200))));
+        PromptBudget budget = budget(1200);
+
+        PromptBudget.PromptPlan plan = budget.plan(message("Where is my order?"), "Be polite.", true);
+
+        assertThat(plan.user()).contains("Most relevant", "TRUST CONTEXT: verificationRequired=true", "Where is my order?");
+        assertThat(plan.tokens()).isLessThanOrEqualTo(1200 - 100);
+        assertThat(plan.historyDocuments() + plan.droppedDocuments()).isEqualTo(2);
+        assertThat(meterRegistry.get("analysis.prompt.tokens").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void truncatesToTheTokenLimit() {
+        PromptBudget budget = budget(4096);
+        String text = "word ".repeat(500);
+
+        String truncated = budget.truncate(text, 50);
+
+        assertThat(budget.count(truncated)).isLessThanOrEqualTo(50);
+        assertThat(text).startsWith(truncated);
+        assertThat(budget.truncate("short", 50)).isEqualTo("short");
+    }
+
+    private PromptBudget budget(int numCtx) {
+        return new PromptBudget(vectorStore, aliasGraph, numCtx, 100, 0.0, 8, 0.0, 512, 32, meterRegistry);
+    }
+
+    private static SocialMessage message(String content) {
+        return SocialMessage.builder()
+                .brandId(UUID.randomUUID())
+                .customerId(UUID.randomUUID())
+                .content(content)
+                .platform("TWITTER")
+                .build();
+    }
+}
@@ -0,0 +1,168 @@
+package com.nocode.ai.service.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs the routing models against stub Ollama servers on localhost.
+ */
+class RoutingChatModelTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void failsOverAndEjectsAnEndpointThatKeepsFailing() {
+        StubOllama broken = stub("broken", 0, 500, 200);
+        StubOllama healthy = stub("healthy", 0, 200, 200);
+        EndpointPool pool = pool(1, broken, healthy);
+        RoutingChatModel model = new RoutingChatModel(pool, false, Duration.ofSeconds(1), Duration.ofMillis(50), meterRegistry);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(model.call(new Prompt("hello")).getResult().getOutput().getText()).isEqualTo("healthy");
+        }
+
+        assertThat(broken.chatCalls().get()).isPositive();
+        assertThat(healthy.chatCalls().get()).isEqualTo(4);
+        assertThat(pool.endpoints().getFirst().isAvailable(System.nanoTime())).isFalse();
+    }
+
+    @Test
+    void streamFailsOverBeforeItsFirstResponse() {
+        StubOllama broken = stub("broken", 0, 500, 200);
+        StubOllama healthy = stub("healthy", 0, 200, 200);
+        EndpointPool pool = pool(3, broken, healthy);
+        RoutingChatModel model = new RoutingChatModel(pool, false, Duration.ofSeconds(1), Duration.ofMillis(50), meterRegistry);
+
+        String answer = model.stream(new Prompt("hello"))
+                .map(response -> response.getResult().getOutput().getText())
+                .collect(Collectors.joining())
+                .block(Duration.ofSeconds(5));
+
+        assertThat(answer).isEqualTo("healthy");
+        assertThat(broken.chatCalls().get()).isEqualTo(1);
+        assertThat(pool.endpoints()).allSatisfy(endpoint -> assertThat(endpoint.getOutstanding().get()).isZero());
+        assertThat(pool.endpoints().getFirst().getConsecutiveFailures().get()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgesASlowCallOnTheOtherEndpoint() {
+        StubOllama slow = stub("slow", 2000, 200, 200);
+        StubOllama fast = stub("fast", 0, 200, 200);
+        EndpointPool pool = pool(3, slow, fast);
+        // Make the slow endpoint the least loaded one so it is picked first
+        pool.acquire(Set.of(pool.endpoints().getFirst()));
+        RoutingChatModel model = new RoutingChatModel(pool, true, Duration.ofMillis(100), Duration.ofMillis(50), meterRegistry);
+
+        long start = System.nanoTime();
+        String answer = model.call(new Prompt("hello")).getResult().getOutput().getText();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(answer).isEqualTo("fast");
+        assertThat(elapsed).isLessThan(Duration.ofMillis(1500));
+        assertThat(meterRegistry.get("ollama.hedge.requests").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("ollama.hedge.wins").counter().count()).isEqualTo(1.0);
+        assertThat(pool.endpoints().getFirst().getOutstanding().get()).isZero();
+    }
+
+    @Test
+    void healthCheckTakesAnEndpointOutOfRotation() {
+        StubOllama down = stub("down", 0, 200, 503);
+        StubOllama up = stub("up", 0, 200, 200);
+        EndpointPool pool = pool(3, down, up);
+
+        pool.checkHealth();
+
+        assertThat(pool.endpoints().getFirst().isHealthy()).isFalse();
+        for (int i = 0; i < 3; i++) {
+            OllamaEndpoint endpoint = pool.acquire(Set.of());
+            assertThat(endpoint.getBaseUrl()).isEqualTo(up.baseUrl());
+            pool.release(endpoint, true);
+        }
+    }
+
+    private EndpointPool pool(int ejectAfterFailures, StubOllama... stubs) {
+        OllamaOptions chatOptions = OllamaOptions.builder().model("stub").build();
+        OllamaOptions embeddingOptions = OllamaOptions.builder().model("stub-embedding").build();
+        List<OllamaEndpoint> endpoints = new ArrayList<>();
+        for (StubOllama stub : stubs) {
+            endpoints.add(OllamaEndpoint.create(stub.baseUrl(), chatOptions, embeddingOptions));
+        }
+        return new EndpointPool(endpoints, ejectAfterFailures, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofMillis(500), meterRegistry);
+    }
+
+    private StubOllama stub(String answer, long delayMs, int chatStatus, int healthStatus) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            StubOllama stub = new StubOllama(server);
+            server.createContext("/api/chat", exchange -> {
+                stub.chatCalls().incrementAndGet();
+                sleep(delayMs);
+                respond(exchange, chatStatus, chatStatus == 200 ? """
+                    {"model": "stub", "created_at": "2025-01-01T00:00:00Z",
+                     "message": {"role": "assistant", "content": "%s"},
+                     "done": true, "done_reason": "stop", "prompt_eval_count": 1, "eval_count": 1}
+                    """.formatted(answer) : "{\"error\": \"boom\"}");
+            });
+            server.createContext("/api/tags", exchange -> respond(exchange, healthStatus, "{\"models\": []}"));
+            server.start();
+            servers.add(server);
+            return stub;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record StubOllama(HttpServer server, AtomicInteger chatCalls) {
+
+        StubOllama(HttpServer server) {
+            this(server, new AtomicInteger());
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+    }
+}